@@ -1,18 +1,26 @@
 package models;
 
+import utils.DataRepository;
 import utils.FileIO;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 
-public class BetManager {
+/**
+ * Keeps track of bets and settles them when their race completes. Bets are placed on the
+ * EDT and settled on the race's thread, so every method locks the manager.
+ */
+public class BetManager implements RaceListener {
     private List<Bet> bets;
     private Map<String, List<Bet>> raceBets;
+    // Odds each bet was struck at; only known for bets placed this session
+    private Map<Bet, Double> betOdds;
     
     public BetManager() {
         bets = new ArrayList<>();
         raceBets = new HashMap<>();
+        betOdds = new HashMap<>();
         loadBets();
     }
     
@@ -23,49 +31,65 @@ public class BetManager {
      * @param amount The amount to bet
      * @return true if bet was placed successfully, false otherwise
      */
-    public boolean placeBet(Race race, Horse horse, double amount) {
+    public synchronized boolean placeBet(Race race, Horse horse, double amount) {
+        return placeBet(race, horse, amount, race.getLanes().length);
+    }
+    
+    /**
+     * Place a bet on a horse in a race at fixed odds
+     * @param race The race to bet on
+     * @param horse The horse to bet on
+     * @param amount The amount to bet
+     * @param odds The decimal odds the bet pays at if the horse wins
+     * @return true if bet was placed successfully, false otherwise
+     */
+    public synchronized boolean placeBet(Race race, Horse horse, double amount, double odds) {
         // Create new bet
         Bet bet = new Bet(race.getRaceID(), horse, amount);
         
         // Add to lists
         bets.add(bet);
+        betOdds.put(bet, odds);
         raceBets.computeIfAbsent(race.getRaceID(), k -> new ArrayList<>()).add(bet);
         
-        // Create transaction for the bet
+        // Create transaction for the bet; the repository writes it out in the background
         Transaction transaction = new Transaction(Transaction.TransactionType.BET, amount);
+        DataRepository.getInstance().addTransaction(transaction);
         
-        // Save both bet and transaction
-        return FileIO.saveBets(bets) && FileIO.saveTransactions(List.of(transaction));
+        return FileIO.saveBets(bets);
     }
     
     /**
      * Process race results and update bets
      * @param race The completed race
      */
-    public void processRaceResults(Race race) {
+    public synchronized void processRaceResults(Race race) {
         List<Bet> raceBetsList = raceBets.get(race.getRaceID());
         if (raceBetsList == null || raceBetsList.isEmpty()) {
             return; // No bets to process
         }
         
+        // Nobody collects if every horse fell
+        if (race.getFinishOrder().isEmpty()) {
+            return;
+        }
+
         // Get winning horse
         Horse winner = race.getFinishOrder().get(0);
         
-        // Calculate odds based on number of horses
-        double odds = race.getLanes().length;
-        
         // Process each bet
         for (Bet bet : raceBetsList) {
             // Check if bet was on the winning horse by matching name and symbol
             if (bet.getHorseName().equals(winner.getName()) && bet.getHorseSymbol() == winner.getSymbol()) {
-                // Calculate winnings
+                // Pay at the odds the bet was placed at, or one per runner if those are unknown
+                double odds = betOdds.getOrDefault(bet, (double) race.getLanes().length);
                 double winnings = bet.calculatePotentialWinnings(odds);
                 bet.setWon(true);
                 bet.setWinnings(winnings);
                 
                 // Create transaction for winnings
                 Transaction transaction = new Transaction(Transaction.TransactionType.WIN, winnings);
-                FileIO.saveTransactions(List.of(transaction));
+                DataRepository.getInstance().addTransaction(transaction);
             }
         }
         
@@ -73,13 +97,24 @@ public class BetManager {
         FileIO.saveBets(bets);
     }
     
+    /**
+     * Settles a race's bets as soon as it completes
+     * @param event The race event
+     */
+    @Override
+    public void onRaceEvent(RaceEvent event) {
+        if (event.getType() == RaceEvent.Type.RACE_COMPLETE) {
+            processRaceResults(event.getRace());
+        }
+    }
+    
     /**
      * Get all bets for a specific race
      * @param raceId The ID of the race
-     * @return List of bets for the race
+     * @return List of bets for the race; a copy, safe to read while bets are settled
      */
-    public List<Bet> getRaceBets(String raceId) {
-        return raceBets.getOrDefault(raceId, new ArrayList<>());
+    public synchronized List<Bet> getRaceBets(String raceId) {
+        return new ArrayList<>(raceBets.getOrDefault(raceId, new ArrayList<>()));
     }
     
     /**
@@ -87,7 +122,7 @@ public class BetManager {
      * @param raceId The ID of the race
      * @return Total amount bet
      */
-    public double getTotalRaceBets(String raceId) {
+    public synchronized double getTotalRaceBets(String raceId) {
         return raceBets.getOrDefault(raceId, new ArrayList<>())
                       .stream()
                       .mapToDouble(Bet::getAmount)
@@ -97,7 +132,7 @@ public class BetManager {
     /**
      * Load bets from CSV file
      */
-    private void loadBets() {
+    private synchronized void loadBets() {
         bets = FileIO.loadBets();
         // Rebuild raceBets map
         raceBets.clear();
@@ -0,0 +1,267 @@
+package models;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * An event-driven alternative to RaceKernel. A lane's move and fall chances only change
+ * when its distance does, so the number of ticks until its next move or fall is
+ * geometric and can be drawn in one go instead of one Bernoulli trial per tick.
+ * Lanes never interact, so each lane is run to the end on its own and the finish order
+ * is recovered from the finish ticks (same-tick ties go to the lower lane, as in the
+ * tick engine). Cost is O(moves) rather than O(ticks x lanes), which pays off on
+ * low-confidence, MUDDY and ICY races where most ticks do nothing.
+ * <p>
+ * The outcome distribution is the same as RaceKernel's, but the draws are used
+ * differently, so a given seed does not give the same race in both engines.
+ */
+public class EventRaceKernel implements RaceEngine {
+    private final int laneCount;
+    private final int length;
+
+    // Per (lane, distance): chance something happens on a tick, its log complement,
+    // and the share of events that are a move (the rest are falls where the lane stands)
+    private final double[] eventChance;
+    private final double[] logNoEvent;
+    private final double[] moveShare;
+    // Per (lane, distance): share of moves that are followed by a fall on the same tick
+    private final double[] fallAfterMoveShare;
+
+    private final int[] distance;
+    private final boolean[] fallen;
+    private final boolean[] finished;
+    private final int[] finishTick;
+    private final int[] finishOrder;
+    private final long[] finishKeys;
+    private final int[] distanceCounts;
+    private int finishedCount;
+    private int tick;
+    // Tick run() picks the race up from; 0 unless the kernel was reset to a frame
+    private int startTick;
+
+    private EventRaceKernel(int laneCount, int length) {
+        this.laneCount = laneCount;
+        this.length = length;
+        int tableSize = laneCount * Math.max(0, length);
+        this.eventChance = new double[tableSize];
+        this.logNoEvent = new double[tableSize];
+        this.moveShare = new double[tableSize];
+        this.fallAfterMoveShare = new double[tableSize];
+        this.distance = new int[laneCount];
+        this.fallen = new boolean[laneCount];
+        this.finished = new boolean[laneCount];
+        this.finishTick = new int[laneCount];
+        this.finishOrder = new int[laneCount];
+        this.finishKeys = new long[laneCount];
+        this.distanceCounts = new int[Math.max(0, length) + 1];
+    }
+
+    /**
+     * Builds an event kernel from the same compiled probability tables the tick engine uses.
+     */
+    public static EventRaceKernel compile(Track track, Horse[] lineup) {
+        return fromTables(RaceKernel.compile(track, lineup));
+    }
+
+    /**
+     * Same as compile(track, lineup), but with each lane's base confidence taken from
+     * confidences instead of the horse.
+     */
+    public static EventRaceKernel compile(Track track, Horse[] lineup, double[] confidences) {
+        return fromTables(RaceKernel.compile(track, lineup, confidences));
+    }
+
+    /**
+     * Same as compile(track, lineup, confidences), with the model constants taken from
+     * parameters instead of the defaults.
+     */
+    public static EventRaceKernel compile(Track track, Horse[] lineup, double[] confidences,
+                                          ModelParameters parameters) {
+        return fromTables(RaceKernel.compile(track, lineup, confidences, parameters));
+    }
+
+    private static EventRaceKernel fromTables(RaceKernel tables) {
+        int length = tables.getLength();
+        int laneCount = tables.getLaneCount();
+        EventRaceKernel kernel = new EventRaceKernel(laneCount, length);
+
+        for (int lane = 0; lane < laneCount; lane++) {
+            double fall = tables.getFallChance(lane);
+            for (int d = 0; d < length; d++) {
+                double move = Math.min(1.0, tables.getMoveChance(lane, d));
+                int index = lane * length + d;
+                double event;
+                if (d + 1 < length) {
+                    // move, move-then-fall, or fall in place
+                    event = 1.0 - (1.0 - move) * (1.0 - fall);
+                    kernel.fallAfterMoveShare[index] = fall;
+                } else {
+                    // crossing the line ends the lane before the fall roll
+                    event = move + (1.0 - move) * fall;
+                    kernel.fallAfterMoveShare[index] = 0.0;
+                }
+                event = Math.min(1.0, Math.max(0.0, event));
+                kernel.eventChance[index] = event;
+                kernel.logNoEvent[index] = Math.log1p(-event);
+                kernel.moveShare[index] = event > 0.0 ? move / event : 0.0;
+            }
+        }
+
+        kernel.reset();
+        return kernel;
+    }
+
+    @Override
+    public void reset() {
+        for (int lane = 0; lane < laneCount; lane++) {
+            distance[lane] = 0;
+            fallen[lane] = false;
+            finished[lane] = false;
+            finishTick[lane] = -1;
+        }
+        finishedCount = 0;
+        tick = 0;
+        startTick = 0;
+    }
+
+    /**
+     * Puts the kernel in the state shown by frame, so run() plays out the rest of that race.
+     * Waits between moves are memoryless, so continuing from here has the same outcome
+     * distribution as the original race from that tick on. Lanes already over the line are
+     * taken to have finished on the frame's tick, in lane order.
+     */
+    public void resetTo(RaceFrame frame) {
+        finishedCount = 0;
+        for (int lane = 0; lane < laneCount; lane++) {
+            distance[lane] = frame.distance[lane];
+            fallen[lane] = frame.state[lane] == RaceFrame.FALLEN;
+            finished[lane] = frame.state[lane] == RaceFrame.FINISHED;
+            finishTick[lane] = finished[lane] ? frame.tick : -1;
+            if (finished[lane]) {
+                finishOrder[finishedCount++] = lane;
+            }
+        }
+        tick = frame.tick;
+        startTick = frame.tick;
+    }
+
+    /**
+     * Runs every lane to its finish or fall, or until maxTicks ticks have passed.
+     *
+     * @return true if every lane finished or fell within maxTicks
+     */
+    @Override
+    public boolean run(SplittableRandom random, int maxTicks) {
+        boolean raceComplete = true;
+        int lastTick = startTick;
+
+        for (int lane = 0; lane < laneCount && length > 0; lane++) {
+            if (fallen[lane] || finished[lane]) {
+                continue;
+            }
+            int laneTick = runLane(lane, random, maxTicks);
+            if (laneTick < 0) {
+                raceComplete = false;
+                lastTick = maxTicks;
+            } else {
+                lastTick = Math.max(lastTick, laneTick);
+            }
+        }
+
+        // Order finishers by finish tick, ties to the lower lane
+        for (int i = 0; i < finishedCount; i++) {
+            int lane = finishOrder[i];
+            finishKeys[i] = (long) finishTick[lane] * laneCount + lane;
+        }
+        Arrays.sort(finishKeys, 0, finishedCount);
+        for (int i = 0; i < finishedCount; i++) {
+            finishOrder[i] = (int) (finishKeys[i] % laneCount);
+        }
+
+        tick = lastTick;
+        return raceComplete;
+    }
+
+    /**
+     * @return the tick the lane finished or fell on, or -1 if it was still running at maxTicks
+     */
+    private int runLane(int lane, SplittableRandom random, int maxTicks) {
+        int laneTick = startTick;
+        int d = distance[lane];
+        int base = lane * length;
+
+        while (true) {
+            int index = base + d;
+            double event = eventChance[index];
+            if (event <= 0.0) {
+                distance[lane] = d;
+                return -1;
+            }
+
+            // Ticks until the next event: geometric on {1, 2, ...}
+            long wait = 1;
+            if (event < 1.0) {
+                wait += (long) (Math.log(1.0 - random.nextDouble()) / logNoEvent[index]);
+            }
+            if (laneTick + wait > maxTicks) {
+                distance[lane] = d;
+                return -1;
+            }
+            laneTick += (int) wait;
+
+            if (random.nextDouble() < moveShare[index]) {
+                d++;
+                if (d >= length) {
+                    distance[lane] = d;
+                    finished[lane] = true;
+                    finishTick[lane] = laneTick;
+                    finishOrder[finishedCount++] = lane;
+                    return laneTick;
+                }
+                // Given a move happened, the fall roll on the same tick is independent of it
+                if (fallAfterMoveShare[index] > 0.0 && random.nextDouble() < fallAfterMoveShare[index]) {
+                    distance[lane] = d;
+                    fallen[lane] = true;
+                    return laneTick;
+                }
+            } else {
+                distance[lane] = d;
+                fallen[lane] = true;
+                return laneTick;
+            }
+        }
+    }
+
+    /**
+     * Writes the full placings into out, in the same order as RaceKernel.fillResultOrder.
+     */
+    @Override
+    public void fillResultOrder(int[] out) {
+        System.arraycopy(finishOrder, 0, out, 0, finishedCount);
+        RaceKernel.orderUnfinished(laneCount, distance, finished, finishedCount, out, distanceCounts);
+    }
+
+    @Override
+    public int getLaneCount() { return laneCount; }
+
+    @Override
+    public int getTick() { return tick; }
+
+    @Override
+    public int getDistance(int lane) { return distance[lane]; }
+
+    @Override
+    public boolean hasFallen(int lane) { return fallen[lane]; }
+
+    @Override
+    public boolean hasFinished(int lane) { return finished[lane]; }
+
+    @Override
+    public int getFinishTick(int lane) { return finishTick[lane]; }
+
+    @Override
+    public int getFinishedCount() { return finishedCount; }
+
+    @Override
+    public int getFinisher(int position) { return finishOrder[position]; }
+}
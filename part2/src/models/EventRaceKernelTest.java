@@ -0,0 +1,75 @@
+package models;
+
+import utils.MonteCarloSimulator;
+import utils.SimulationResult;
+
+/**
+ * Statistical check that EventRaceKernel and BatchRaceSimulator reproduce the tick engine's
+ * outcome distribution. For each scenario every engine simulates the same lineup and every
+ * lane's win rate, fall rate and expected position must agree with the tick engine's within
+ * 4.5 standard errors.
+ */
+public class EventRaceKernelTest {
+    private static final int RUNS = 200_000;
+    private static final double MAX_Z = 4.5;
+
+    public static void main(String[] args) {
+        Horse[] lineup = {
+            new Horse('A', "Thunder", 0.5, "", ""),
+            new Horse('B', "Lightning", 0.8, "", ""),
+            new Horse('C', "Tornado", 0.95, "", ""),
+            new Horse('D', "Blizzard", 0.2, "", "")
+        };
+        lineup[1].addEquipment(new HorseItem("Light Saddle", "Equipment", 1.1, 1.0, 1.0, ""));
+        lineup[2].addEquipment(new HorseItem("Heavy Saddle", "Equipment", 0.9, 1.2, 1.0, ""));
+        lineup[3].addEquipment(new HorseItem("Blinkers", "Equipment", 1.0, 1.0, 1.3, ""));
+
+        boolean allPassed = true;
+        int test = 1;
+        for (Track.TrackCondition condition : Track.TrackCondition.values()) {
+            for (Track.TrackShape shape : Track.TrackShape.values()) {
+                Track track = new Track("Test", lineup.length, 20, shape, condition);
+                for (MonteCarloSimulator.Engine engine : MonteCarloSimulator.Engine.values()) {
+                    if (engine == MonteCarloSimulator.Engine.TICK) continue;
+                    System.out.println("Test " + test++ + ": " + shape + " / " + condition + ", TICK vs " + engine);
+                    allPassed &= compareEngines(track, lineup, engine);
+                    System.out.println();
+                }
+            }
+        }
+
+        System.out.println("All engines agree: " + allPassed + " (Expected: true)");
+    }
+
+    private static boolean compareEngines(Track track, Horse[] lineup, MonteCarloSimulator.Engine engine) {
+        SimulationResult tick = MonteCarloSimulator.simulate(track, lineup, RUNS, 1L,
+                MonteCarloSimulator.Engine.TICK);
+        SimulationResult other = MonteCarloSimulator.simulate(track, lineup, RUNS, 2L, engine);
+
+        boolean passed = true;
+        for (int lane = 0; lane < lineup.length; lane++) {
+            double winZ = proportionZ(tick.getWinProbability(lane), other.getWinProbability(lane));
+            double fallZ = proportionZ(tick.getFallRate(lane), other.getFallRate(lane));
+            // Positions run 1..n, so n^2 / 4 bounds the variance
+            double positionError = lineup.length / 2.0 * Math.sqrt(2.0 / RUNS);
+            double positionZ = Math.abs(tick.getExpectedPosition(lane) - other.getExpectedPosition(lane))
+                    / positionError;
+
+            boolean lanePassed = winZ < MAX_Z && fallZ < MAX_Z && positionZ < MAX_Z;
+            passed &= lanePassed;
+            System.out.printf("Lane %d: win %.4f vs %.4f, fall %.4f vs %.4f, position %.3f vs %.3f -> %s%n",
+                    lane + 1,
+                    tick.getWinProbability(lane), other.getWinProbability(lane),
+                    tick.getFallRate(lane), other.getFallRate(lane),
+                    tick.getExpectedPosition(lane), other.getExpectedPosition(lane),
+                    lanePassed ? "OK" : "MISMATCH");
+        }
+        return passed;
+    }
+
+    private static double proportionZ(double p1, double p2) {
+        double pooled = (p1 + p2) / 2.0;
+        double error = Math.sqrt(pooled * (1.0 - pooled) * 2.0 / RUNS);
+        return error == 0.0 ? 0.0 : Math.abs(p1 - p2) / error;
+    }
+}
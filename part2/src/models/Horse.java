@@ -35,6 +35,17 @@ public class Horse
        this.accessories = new ArrayList<>();
     }
 
+    /**
+     * Copies a horse's profile and items (not its race state), so simulations can run
+     * on their own instances without touching the original.
+     */
+    public Horse(Horse other)
+    {
+       this(other.horseSymbol, other.horseName, other.horseConfidence, other.breed, other.coatColor);
+       this.equipment.addAll(other.equipment);
+       this.accessories.addAll(other.accessories);
+    }
+
     
     public double getConfidence()
     {
@@ -69,18 +80,29 @@ public class Horse
     public void goBackToStart()
     {
         this.distanceTravelled=0;
+        this.fallen=false;
     }
 
     public void moveForward(){ this.distanceTravelled++;}
 
+    // Used by Race to copy the compiled kernel's lane state back onto the horse
+    void setRaceState(int distanceTravelled, boolean fallen)
+    {
+        this.distanceTravelled=distanceTravelled;
+        this.fallen=fallen;
+    }
+
+    /**
+     * Sets confidence in memory only. Saving is up to the caller: races hand their results
+     * to RaceResultWriter, which passes the new confidences to DataRepository.
+     */
     public void setConfidence(double newConfidence)
     {
         if(newConfidence>=0.0 && newConfidence<=1.0){
             this.horseConfidence=newConfidence;
-            utils.FileIO.updateHorseConfidence(this.horseName,this.horseSymbol,newConfidence);
         }
     }
-    
+
     public void setSymbol(char newSymbol)
     {
         this.horseSymbol=newSymbol;
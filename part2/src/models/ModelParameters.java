@@ -0,0 +1,129 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * The constants of the race model in one immutable object: the base fall chance, each
+ * track condition's speed and fall-risk modifiers, the FIGURE_EIGHT crossover slowdown
+ * and the confidence adjustments a horse carries out of a race.
+ * <p>
+ * DEFAULT holds the values the game has always used. The with* methods return a copy
+ * with one value changed, so sweeps can build variants without touching the default.
+ */
+public class ModelParameters {
+    public static final ModelParameters DEFAULT = new ModelParameters(
+            0.01,
+            conditionValues(0.8, 1.0, 0.6),
+            conditionValues(0.1, 0.0, 0.3),
+            0.7,
+            -0.03, 0.07, 0.02, 0.01);
+
+    private final double fallProbability;
+    // Indexed by TrackCondition ordinal
+    private final double[] speedModifier;
+    private final double[] fallRiskModifier;
+    private final double figureEightAdjustment;
+    private final double fallenConfidenceChange;
+    private final double winConfidenceChange;
+    private final double placedConfidenceChange;
+    private final double finishedConfidenceChange;
+
+    private ModelParameters(double fallProbability, double[] speedModifier, double[] fallRiskModifier,
+                            double figureEightAdjustment, double fallenConfidenceChange,
+                            double winConfidenceChange, double placedConfidenceChange,
+                            double finishedConfidenceChange) {
+        this.fallProbability = fallProbability;
+        this.speedModifier = speedModifier;
+        this.fallRiskModifier = fallRiskModifier;
+        this.figureEightAdjustment = figureEightAdjustment;
+        this.fallenConfidenceChange = fallenConfidenceChange;
+        this.winConfidenceChange = winConfidenceChange;
+        this.placedConfidenceChange = placedConfidenceChange;
+        this.finishedConfidenceChange = finishedConfidenceChange;
+    }
+
+    private static double[] conditionValues(double muddy, double dry, double icy) {
+        double[] values = new double[Track.TrackCondition.values().length];
+        values[Track.TrackCondition.MUDDY.ordinal()] = muddy;
+        values[Track.TrackCondition.DRY.ordinal()] = dry;
+        values[Track.TrackCondition.ICY.ordinal()] = icy;
+        return values;
+    }
+
+    /** @return the base fall chance per tick, scaled by the square of confidence */
+    public double getFallProbability() { return fallProbability; }
+
+    public double getSpeedModifier(Track.TrackCondition condition) { return speedModifier[condition.ordinal()]; }
+
+    public double getFallRiskModifier(Track.TrackCondition condition) { return fallRiskModifier[condition.ordinal()]; }
+
+    /** @return the move chance multiplier at a FIGURE_EIGHT crossover */
+    public double getFigureEightAdjustment() { return figureEightAdjustment; }
+
+    public double getFallenConfidenceChange() { return fallenConfidenceChange; }
+
+    public double getWinConfidenceChange() { return winConfidenceChange; }
+
+    /** @return the change for finishing 2nd or 3rd */
+    public double getPlacedConfidenceChange() { return placedConfidenceChange; }
+
+    /** @return the change for finishing below 3rd */
+    public double getFinishedConfidenceChange() { return finishedConfidenceChange; }
+
+    public ModelParameters withFallProbability(double value) {
+        return new ModelParameters(value, speedModifier, fallRiskModifier, figureEightAdjustment,
+                fallenConfidenceChange, winConfidenceChange, placedConfidenceChange, finishedConfidenceChange);
+    }
+
+    public ModelParameters withSpeedModifier(Track.TrackCondition condition, double value) {
+        double[] values = speedModifier.clone();
+        values[condition.ordinal()] = value;
+        return new ModelParameters(fallProbability, values, fallRiskModifier, figureEightAdjustment,
+                fallenConfidenceChange, winConfidenceChange, placedConfidenceChange, finishedConfidenceChange);
+    }
+
+    public ModelParameters withFallRiskModifier(Track.TrackCondition condition, double value) {
+        double[] values = fallRiskModifier.clone();
+        values[condition.ordinal()] = value;
+        return new ModelParameters(fallProbability, speedModifier, values, figureEightAdjustment,
+                fallenConfidenceChange, winConfidenceChange, placedConfidenceChange, finishedConfidenceChange);
+    }
+
+    public ModelParameters withFigureEightAdjustment(double value) {
+        return new ModelParameters(fallProbability, speedModifier, fallRiskModifier, value,
+                fallenConfidenceChange, winConfidenceChange, placedConfidenceChange, finishedConfidenceChange);
+    }
+
+    public ModelParameters withConfidenceChanges(double fallen, double win, double placed, double finished) {
+        return new ModelParameters(fallProbability, speedModifier, fallRiskModifier, figureEightAdjustment,
+                fallen, win, placed, finished);
+    }
+
+    /**
+     * The confidence a horse carries out of a race: a penalty for falling, a boost for
+     * winning, a smaller one for 2nd or 3rd and a tiny one otherwise, clamped to [0, 1].
+     */
+    public double adjustedConfidence(double currentConfidence, int position, boolean hasFallen) {
+        double adjustment;
+
+        if (hasFallen) {
+            adjustment = fallenConfidenceChange;
+        } else if (position == 1) {
+            adjustment = winConfidenceChange;
+        } else if (position <= 3) {
+            adjustment = placedConfidenceChange;
+        } else {
+            adjustment = finishedConfidenceChange;
+        }
+
+        return Math.max(0.0, Math.min(1.0, currentConfidence + adjustment));
+    }
+
+    @Override
+    public String toString() {
+        return "fallProbability=" + fallProbability
+                + ", speed=" + Arrays.toString(speedModifier)
+                + ", fallRisk=" + Arrays.toString(fallRiskModifier)
+                + ", figureEight=" + figureEightAdjustment;
+    }
+}
@@ -2,42 +2,85 @@ package models;
 
 import java.util.List;
 import java.util.concurrent.TimeUnit;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.UUID;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-import utils.FileIO;
+import utils.RaceResultWriter;
 
 public class Race {
 
-    private String raceID = UUID.randomUUID().toString();
+    private final String raceID;
+    private final long seed;
+    private SplittableRandom random;
     private Track track;
     private Horse[] lanes;
     private List<Horse> finishOrder;
-    private long startTime;
     private Map<Horse, Long> finishTimes;
-    final static double fallProbability = 0.01;
+    private RaceKernel kernel;
+    // What the horses are mirrored from: the kernel, or a log player during a replay
+    private RaceEngine engine;
+    private final RaceFrameBuffer frames;
+    public final static long TICK_MILLIS = 100;
+    public final static int MAX_SIMULATED_TICKS = 100_000;
     private Map<Horse, Double> confidenceChanges = new HashMap<>();
-
+    private final List<RaceListener> listeners = new CopyOnWriteArrayList<>();
 
     public Race(Track track) {
+        this(track, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Creates a race whose random draws all come from the given seed, so running it
+     * again with the same track, lineup and seed replays it exactly.
+     * Parallel callers should derive seeds from their own SplittableRandom.split().
+     */
+    public Race(Track track, long seed) {
+        this(track, seed, UUID.randomUUID().toString());
+    }
+
+    Race(Track track, long seed, String raceID) {
+        this.raceID = raceID;
         this.track = track;
+        this.seed = seed;
         this.lanes = new Horse[track.getLaneCount()];
         this.finishOrder = new ArrayList<>();
         this.finishTimes = new HashMap<>();
+        this.frames = new RaceFrameBuffer(lanes.length);
     }
 
     public String getRaceID() {
         return this.raceID;
     }
 
+    public long getSeed() {
+        return this.seed;
+    }
+
 
     public Track getTrack() {
         return this.track;
     }
 
+    /**
+     * Per-tick snapshots of the race, safe to read from any thread while it runs.
+     */
+    public RaceFrameBuffer getFrames() {
+        return this.frames;
+    }
+
+    public void addRaceListener(RaceListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeRaceListener(RaceListener listener) {
+        listeners.remove(listener);
+    }
+
     public void addHorse(Horse theHorse, int laneNumber) {
         if (laneNumber < 1 || laneNumber > lanes.length) {
             System.out.println("Cannot add horse to lane " + laneNumber + " because there is no such lane");
@@ -46,116 +89,206 @@ public class Race {
         lanes[laneNumber - 1] = theHorse;
     }
 
+    /**
+     * Runs the race at GUI pace: one logical tick every TICK_MILLIS of wall time,
+     * then prints and stores the results.
+     */
     public void startRace() {
-        for (Horse horse : lanes) {
-            if (horse == null) {
-                System.out.println("Cannot start race: Not all lanes have horses assigned");
-                return;
+        if (!allLanesFilled()) {
+            System.out.println("Cannot start race: Not all lanes have horses assigned");
+            return;
+        }
+
+        resetRace();
+
+        while (!tick()) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(TICK_MILLIS);
+            } catch (Exception e) {
+            }
+        }
+
+        printResults();
+
+        // Store race results after the race ends
+        storeRaceResults();
+        fireEvent(RaceEvent.Type.RACE_COMPLETE, -1, 0, 0);
+    }
+
+    /**
+     * Runs the race headless: logical ticks back to back with no sleeping, no console
+     * output and no persistence. Finish times are tick counts scaled by TICK_MILLIS,
+     * so they match what the paced race would have recorded. Listeners still get every
+     * event; with none attached the horses are only updated once, at the end.
+     *
+     * @return false if not all lanes have horses assigned, true otherwise
+     */
+    public boolean simulate() {
+        if (!allLanesFilled()) {
+            return false;
+        }
+
+        resetRace();
+
+        // Guard against lineups that can never finish (e.g. zero confidence on a dry track)
+        if (listeners.isEmpty()) {
+            kernel.run(random, MAX_SIMULATED_TICKS);
+            writeBackResults();
+        } else {
+            boolean raceComplete = false;
+            while (!raceComplete && kernel.getTick() < MAX_SIMULATED_TICKS) {
+                raceComplete = tick();
             }
         }
+        fireEvent(RaceEvent.Type.RACE_COMPLETE, -1, 0, 0);
+        return true;
+    }
+
+    /**
+     * Plays a recorded race back through this race's frames and listeners, exactly as it
+     * was run. speed scales the pacing (2.0 plays twice as fast); 0 or less plays it
+     * back to back. Nothing is printed or stored, and bets are not involved.
+     */
+    public void replay(RaceLog log, double speed) {
+        if (log.getLaneCount() != lanes.length) {
+            throw new IllegalArgumentException("Log has " + log.getLaneCount() + " lanes, race has " + lanes.length);
+        }
 
-        boolean raceComplete = false;
         finishOrder.clear();
         finishTimes.clear();
-        startTime = System.currentTimeMillis();
-
         for (Horse horse : lanes) {
             horse.goBackToStart();
         }
+        RaceLog.Player player = log.player();
+        engine = player;
+        frames.publish(player);
 
+        long pause = speed > 0 ? Math.round(TICK_MILLIS / speed) : 0;
+        boolean raceComplete = player.isComplete();
         while (!raceComplete) {
-            System.out.flush();
-
-            for (Horse horse : lanes) {
-                if (!raceWonBy(horse) && !horse.hasFallen()) {
-                    moveHorse(horse);
-                    if (raceWonBy(horse) && !finishOrder.contains(horse)) {
-                        finishOrder.add(horse);
-                        finishTimes.put(horse, System.currentTimeMillis() - startTime);
-                    }
+            raceComplete = player.step();
+            writeBackResults();
+            fireEvent(RaceEvent.Type.TICK, -1, 0, 0);
+            if (!raceComplete && pause > 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(pause);
+                } catch (Exception e) {
                 }
             }
+        }
+        fireEvent(RaceEvent.Type.RACE_COMPLETE, -1, 0, 0);
+    }
 
-            //For debugging:
-            //printRace();
+    public int getTickCount() {
+        return engine == null ? 0 : engine.getTick();
+    }
 
-            raceComplete = true;
-            for (Horse horse : lanes) {
-                if (!raceWonBy(horse) && !horse.hasFallen()) {
-                    raceComplete = false;
-                    break;
-                }
+    private boolean allLanesFilled() {
+        for (Horse horse : lanes) {
+            if (horse == null) {
+                return false;
             }
+        }
+        return true;
+    }
 
-            try {
-                TimeUnit.MILLISECONDS.sleep(100);
-            } catch (Exception e) {
-            }
+    /**
+     * Compiles the lineup into a fresh kernel and puts every horse back at the start.
+     */
+    private void resetRace() {
+        finishOrder.clear();
+        finishTimes.clear();
+        random = new SplittableRandom(seed);
+        kernel = RaceKernel.compile(track, lanes);
+        engine = kernel;
+        frames.publish(kernel);
+
+        for (Horse horse : lanes) {
+            horse.goBackToStart();
         }
+    }
 
-        System.out.println("Race ID:" + this.getRaceID());
+    /**
+     * Advances the race by one logical tick and mirrors the new state onto the horses,
+     * so the UI can follow along.
+     *
+     * @return true once every horse has either finished or fallen
+     */
+    private boolean tick() {
+        boolean raceComplete = kernel.step(random);
 
-        System.out.println("\n=== RACE RESULTS ===");
+        //For debugging:
+        //printRace();
 
-        for (int i = 0; i < finishOrder.size(); i++) {
-            Horse horse = finishOrder.get(i);
-            System.out.println((i + 1) + ". Horse " + horse.getSymbol() + " - FINISHED (" + horse.getDistanceTravelled() + " units)");
-        }
+        writeBackResults();
+        fireEvent(RaceEvent.Type.TICK, -1, 0, 0);
+        return raceComplete;
+    }
 
-        List<Horse> fallenHorses = new ArrayList<>();
-        for (Horse horse : lanes) {
-            if (horse.hasFallen()) {
-                fallenHorses.add(horse);
+    /**
+     * Copies distances, falls and any new finishers from the engine onto the Horse objects,
+     * telling listeners about every change. The frame is published first, so a listener
+     * reading it sees at least the state it is being told about.
+     */
+    private void writeBackResults() {
+        frames.publish(engine);
+        boolean notify = !listeners.isEmpty();
+
+        // Only lanes the engine reports as changed, so a tick costs O(horses still racing)
+        for (int i = 0, changed = engine.getChangedCount(); i < changed; i++) {
+            int lane = engine.getChangedLane(i);
+            Horse horse = lanes[lane];
+            int distance = engine.getDistance(lane);
+            boolean fallen = engine.hasFallen(lane);
+            if (notify && distance != horse.getDistanceTravelled()) {
+                fireEvent(RaceEvent.Type.MOVED, lane, distance, 0);
+            }
+            if (notify && fallen && !horse.hasFallen()) {
+                fireEvent(RaceEvent.Type.FELL, lane, distance, 0);
             }
+            horse.setRaceState(distance, fallen);
         }
-        Collections.sort(fallenHorses, (h1, h2) -> Double.compare(h2.getDistanceTravelled(), h1.getDistanceTravelled()));
-
-        for (Horse horse : fallenHorses) {
-            System.out.println((finishOrder.size() + fallenHorses.indexOf(horse) + 1) + ". Horse " + horse.getSymbol() + " - FELL at " + horse.getDistanceTravelled() + " units");
+        for (int i = finishOrder.size(); i < engine.getFinishedCount(); i++) {
+            int lane = engine.getFinisher(i);
+            finishOrder.add(lanes[lane]);
+            finishTimes.put(lanes[lane], engine.getFinishTick(lane) * TICK_MILLIS);
+            if (notify) {
+                fireEvent(RaceEvent.Type.FINISHED, lane, engine.getDistance(lane), i + 1);
+            }
         }
+    }
 
-        if (!finishOrder.isEmpty()) {
-            System.out.println("\nWINNER: Horse " + finishOrder.get(0).getSymbol() + "!");
-        } else {
-            System.out.println("\nNo winners - all horses fell!");
+    private void fireEvent(RaceEvent.Type type, int lane, int distance, int position) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        RaceEvent event = new RaceEvent(type, this, getTickCount(), lane, distance, position);
+        for (RaceListener listener : listeners) {
+            listener.onRaceEvent(event);
         }
-
-        // Store race results after the race ends
-        storeRaceResults();
     }
 
-    private void moveHorse(Horse theHorse) {
-        if (!theHorse.hasFallen()) {
-            // Get modifiers
-            double speedModifier = track.getSpeedModifier();
-            double fallRiskModifier = track.getFallRiskModifier();
-            double shapeAdjustment = track.getShapeSpeedAdjustment(theHorse.getDistanceTravelled());
-            double equipmentSpeedMod = theHorse.calculateTotalSpeedModifier();
-            double equipmentEnduranceMod = theHorse.calculateTotalEnduranceModifier();
-            double equipmentConfidenceMod = theHorse.calculateTotalConfidenceModifier();
-
-            double effectiveConfidence = theHorse.getConfidence() * equipmentConfidenceMod;
-            effectiveConfidence = Math.min(1.0, effectiveConfidence);
-            double moveChance = effectiveConfidence * speedModifier * shapeAdjustment * equipmentSpeedMod;
-
-            double raceProgress = (double) theHorse.getDistanceTravelled() / track.getLength();
-            double enduranceEffect = 1.0 - (raceProgress * (1.0 - equipmentEnduranceMod));
-            moveChance *= enduranceEffect;
-
-            if (Math.random() < moveChance) {
-                theHorse.moveForward();
-            }
+    private void printResults() {
+        System.out.println("Race ID:" + this.getRaceID() + " (seed " + this.getSeed() + ")");
 
-            double fallChance = (fallProbability * effectiveConfidence * effectiveConfidence + fallRiskModifier) / equipmentConfidenceMod;
+        System.out.println("\n=== RACE RESULTS ===");
 
-            if (Math.random() < fallChance) {
-                theHorse.fall();
+        // Finishers in finish order, then fallen horses furthest first
+        List<Horse> allHorses = getResultOrder();
+        for (int i = 0; i < allHorses.size(); i++) {
+            Horse horse = allHorses.get(i);
+            if (i < finishOrder.size()) {
+                System.out.println((i + 1) + ". Horse " + horse.getSymbol() + " - FINISHED (" + horse.getDistanceTravelled() + " units)");
+            } else if (horse.hasFallen()) {
+                System.out.println((i + 1) + ". Horse " + horse.getSymbol() + " - FELL at " + horse.getDistanceTravelled() + " units");
             }
         }
-    }
 
-    private boolean raceWonBy(Horse theHorse) {
-        return theHorse.getDistanceTravelled() >= track.getLength();
+        if (!finishOrder.isEmpty()) {
+            System.out.println("\nWINNER: Horse " + finishOrder.get(0).getSymbol() + "!");
+        } else {
+            System.out.println("\nNo winners - all horses fell!");
+        }
     }
 
     public Map<Horse, Double> getConfidenceChanges() {
@@ -170,6 +303,24 @@ public class Race {
         return lanes;
     }
 
+    /**
+     * Full placings of the last run: finishers in finish order, then every other
+     * horse (fallen, or still running when a simulation was cut off) by distance.
+     */
+    public List<Horse> getResultOrder() {
+        if (engine == null) {
+            return new ArrayList<>(Arrays.asList(lanes));
+        }
+
+        int[] order = new int[lanes.length];
+        engine.fillResultOrder(order);
+        List<Horse> allHorses = new ArrayList<>(lanes.length);
+        for (int lane : order) {
+            allHorses.add(lanes[lane]);
+        }
+        return allHorses;
+    }
+
     private void printRace() {
         // Print top border
         multiplePrint('=', track.getLength() + 3);
@@ -233,63 +384,50 @@ public class Race {
      * Maximum adjustment is 7% per race
      */
     private void adjustHorseConfidence(Horse horse, int position, boolean hasFallen) {
-        double currentConfidence = horse.getConfidence();
-        double adjustment = 0.0;
-
-        if (hasFallen) {
-            adjustment = -0.03;
-        } else if (position == 1) {
-            adjustment = 0.07;
-        } else if (position <= 3) {
-            adjustment = 0.02;
-        } else {
-            adjustment = 0.01;
-        }
-
-        double newConfidence = Math.max(0.0, Math.min(1.0, currentConfidence + adjustment));
-        horse.setConfidence(newConfidence);
+        horse.setConfidence(adjustedConfidence(horse.getConfidence(), position, hasFallen));
     }
 
     /**
-     * Stores the race results in the CSV file
+     * The confidence a horse carries out of a race, following the rules above with the
+     * default model parameters. Shared with simulations that track confidence without
+     * touching Horse objects.
      */
+    public static double adjustedConfidence(double currentConfidence, int position, boolean hasFallen) {
+        return ModelParameters.DEFAULT.adjustedConfidence(currentConfidence, position, hasFallen);
+    }
 
+    /**
+     * Adjusts every horse's confidence and hands one result record to the background
+     * writer, which appends it to races.csv and updates horses.csv and the track record.
+     */
     private void storeRaceResults() {
-        // Create a list to store all horses in finish order
-        List<Horse> allHorses = new ArrayList<>(finishOrder);
+        List<Horse> allHorses = getResultOrder();
+        List<RaceResult.Entry> entries = new ArrayList<>(allHorses.size());
         confidenceChanges.clear();
 
-        List<Horse> fallenHorses = new ArrayList<>();
-        for (Horse horse : lanes) {
-            if (horse.hasFallen()) {
-                fallenHorses.add(horse);
-            }
-        }
-        fallenHorses.sort((h1, h2) -> Double.compare(h2.getDistanceTravelled(), h1.getDistanceTravelled()));
-        allHorses.addAll(fallenHorses);
-
         for (int i = 0; i < allHorses.size(); i++) {
             Horse horse = allHorses.get(i);
             long finishTime = finishTimes.getOrDefault(horse, -1L); // -1 for fallen horses
             double oldConfidence = horse.getConfidence();
 
-//            FileIO.storeRaceResult(raceID, horse.getName(), horse.getSymbol(),
-//                    horse.getConfidence(), horse.getDistanceTravelled(), i + 1, finishTime);
-
-            RaceStatistics.storeRaceStats(raceID, horse.getName(), horse.getConfidence(),
-                    horse.getDistanceTravelled(), i + 1, finishTime, track.getName(), track.getCondition());
-
             adjustHorseConfidence(horse, i + 1, horse.hasFallen());
+            entries.add(new RaceResult.Entry(horse.getName(), horse.getSymbol(), oldConfidence,
+                    horse.getConfidence(), horse.getDistanceTravelled(), i + 1, finishTime));
 
             //for ui summary
             double change = horse.getConfidence() - oldConfidence;
             confidenceChanges.put(horse, change);
         }
 
+        String winnerName = null;
+        long winnerTime = 0;
         if (!finishOrder.isEmpty()) {
             Horse winner = finishOrder.get(0);
-            long winnerTime = finishTimes.get(winner);
-            RaceStatistics.updateTrackRecords(track.getName(), winnerTime, winner.getName());
+            winnerName = winner.getName();
+            winnerTime = finishTimes.get(winner);
         }
+
+        RaceResultWriter.getInstance().submit(new RaceResult(raceID, track.getName(), track.getCondition(),
+                entries, winnerName, winnerTime));
     }
 }
@@ -0,0 +1,53 @@
+package models;
+
+import java.util.SplittableRandom;
+
+/**
+ * A compiled, headless race that can be run over and over. Lanes are 0-based in
+ * lineup order. Implementations keep mutable state and are not thread-safe.
+ */
+public interface RaceEngine {
+
+    /** Puts every lane back at the start line. */
+    void reset();
+
+    /**
+     * Runs the race until every lane has finished or fallen, or maxTicks ticks have passed.
+     *
+     * @return true if the race completed within maxTicks
+     */
+    boolean run(SplittableRandom random, int maxTicks);
+
+    /**
+     * Writes the full placings into out (length getLaneCount()): finishers in finish
+     * order, then every other lane by distance, furthest first, ties in lane order.
+     */
+    void fillResultOrder(int[] out);
+
+    int getLaneCount();
+
+    int getTick();
+
+    int getDistance(int lane);
+
+    boolean hasFallen(int lane);
+
+    boolean hasFinished(int lane);
+
+    /** @return the tick the lane crossed the line on, or -1 if it has not finished */
+    int getFinishTick(int lane);
+
+    int getFinishedCount();
+
+    /** @return the lane that finished in the given 0-based position */
+    int getFinisher(int position);
+
+    /**
+     * @return how many lanes may have changed in the last step; after a reset or a
+     * whole run, every lane
+     */
+    default int getChangedCount() { return getLaneCount(); }
+
+    /** @return the i-th lane, in lane order, that may have changed in the last step */
+    default int getChangedLane(int i) { return i; }
+}
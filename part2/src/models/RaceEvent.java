@@ -0,0 +1,47 @@
+package models;
+
+/**
+ * Something that happened during a race. Lane-level events (MOVED, FELL, FINISHED)
+ * carry a 0-based lane and the horse's distance afterwards; TICK marks the end of a
+ * tick and RACE_COMPLETE is sent once after results have been stored.
+ */
+public class RaceEvent {
+    public enum Type {
+        TICK, MOVED, FELL, FINISHED, RACE_COMPLETE
+    }
+
+    private final Type type;
+    private final Race race;
+    private final int tick;
+    private final int lane;
+    private final int distance;
+    private final int position;
+
+    RaceEvent(Type type, Race race, int tick, int lane, int distance, int position) {
+        this.type = type;
+        this.race = race;
+        this.tick = tick;
+        this.lane = lane;
+        this.distance = distance;
+        this.position = position;
+    }
+
+    public Type getType() { return type; }
+
+    public Race getRace() { return race; }
+
+    public int getTick() { return tick; }
+
+    /** @return the 0-based lane, or -1 for TICK and RACE_COMPLETE */
+    public int getLane() { return lane; }
+
+    public int getDistance() { return distance; }
+
+    /** @return the 1-based finishing position for FINISHED events, otherwise 0 */
+    public int getPosition() { return position; }
+
+    @Override
+    public String toString() {
+        return type + "(tick " + tick + (lane >= 0 ? ", lane " + (lane + 1) + ", distance " + distance : "") + ")";
+    }
+}
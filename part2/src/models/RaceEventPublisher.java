@@ -0,0 +1,63 @@
+package models;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bridges a race's listener callbacks to java.util.concurrent.Flow subscribers, each with
+ * its own bounded buffer. When a subscriber falls behind, BLOCK makes the race thread
+ * wait for room and DROP discards the event for that subscriber only. The publisher
+ * completes its subscribers after passing on RACE_COMPLETE, so use one per race.
+ */
+public class RaceEventPublisher implements Flow.Publisher<RaceEvent>, RaceListener, AutoCloseable {
+    public enum Backpressure {
+        BLOCK, DROP
+    }
+
+    private final SubmissionPublisher<RaceEvent> publisher;
+    private final Backpressure backpressure;
+    private final AtomicLong dropped = new AtomicLong();
+
+    public RaceEventPublisher(int bufferSize, Backpressure backpressure) {
+        this(ForkJoinPool.commonPool(), bufferSize, backpressure);
+    }
+
+    public RaceEventPublisher(Executor executor, int bufferSize, Backpressure backpressure) {
+        this.publisher = new SubmissionPublisher<>(executor, bufferSize);
+        this.backpressure = backpressure;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super RaceEvent> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    @Override
+    public void onRaceEvent(RaceEvent event) {
+        if (backpressure == Backpressure.BLOCK) {
+            publisher.submit(event);
+        } else {
+            publisher.offer(event, (subscriber, item) -> {
+                dropped.incrementAndGet();
+                return false;
+            });
+        }
+
+        if (event.getType() == RaceEvent.Type.RACE_COMPLETE) {
+            close();
+        }
+    }
+
+    /** @return how many events were dropped across all subscribers under DROP */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public void close() {
+        publisher.close();
+    }
+}
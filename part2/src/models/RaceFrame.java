@@ -0,0 +1,34 @@
+package models;
+
+/**
+ * What every lane of a race looked like at the end of one tick. Frames are filled in by
+ * RaceFrameBuffer.read and are read-only to everyone else, so a reader can keep one
+ * frame and refill it on every repaint without allocating.
+ */
+public class RaceFrame {
+    public static final byte RUNNING = 0;
+    public static final byte FALLEN = 1;
+    public static final byte FINISHED = 2;
+
+    int tick;
+    final int[] distance;
+    final byte[] state;
+
+    public RaceFrame(int laneCount) {
+        this.distance = new int[laneCount];
+        this.state = new byte[laneCount];
+    }
+
+    public int getTick() { return tick; }
+
+    public int getLaneCount() { return distance.length; }
+
+    public int getDistance(int lane) { return distance[lane]; }
+
+    /** @return RUNNING, FALLEN or FINISHED */
+    public byte getState(int lane) { return state[lane]; }
+
+    public boolean hasFallen(int lane) { return state[lane] == FALLEN; }
+
+    public boolean hasFinished(int lane) { return state[lane] == FINISHED; }
+}
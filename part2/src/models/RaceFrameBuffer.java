@@ -0,0 +1,122 @@
+package models;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * Hands race frames from the race thread to any number of reader threads without locks.
+ * <p>
+ * The writer fills whichever of two slots readers are not pointed at, then flips the
+ * front index, so a reader normally copies a slot nobody is writing. Each slot also
+ * carries a seqlock version (odd while being written); a reader that is overtaken by
+ * two publishes while copying sees the version change and simply copies again. Neither
+ * side allocates.
+ * <p>
+ * There must be a single writer, which Race guarantees by publishing from the thread
+ * that runs the race.
+ */
+public class RaceFrameBuffer {
+    private static final class Slot {
+        volatile long version;
+        int tick;
+        final int[] distance;
+        final byte[] state;
+
+        Slot(int laneCount) {
+            this.distance = new int[laneCount];
+            this.state = new byte[laneCount];
+        }
+    }
+
+    private final int laneCount;
+    private final Slot[] slots;
+    private volatile int front;
+
+    // Lanes changed by the previous publish; the back slot has not seen them yet
+    private final int[] previousChanged;
+    private int previousChangedCount;
+
+    public RaceFrameBuffer(int laneCount) {
+        this.laneCount = laneCount;
+        this.slots = new Slot[] { new Slot(laneCount), new Slot(laneCount) };
+        this.previousChanged = new int[laneCount];
+        this.previousChangedCount = laneCount;
+    }
+
+    public int getLaneCount() { return laneCount; }
+
+    /**
+     * Publishes the engine's current state as the latest frame. The back slot was last
+     * written two publishes ago, so only the lanes the engine reports as changed since
+     * then are copied; a tick in a mass-start race costs O(lanes that moved or fell).
+     */
+    void publish(RaceEngine engine) {
+        int back = front ^ 1;
+        Slot slot = slots[back];
+        int changedCount = engine.getChangedCount();
+
+        slot.version++;
+        // Keep the field writes below from moving ahead of the odd version
+        VarHandle.storeStoreFence();
+
+        slot.tick = engine.getTick();
+        if (changedCount == laneCount || previousChangedCount == laneCount) {
+            for (int lane = 0; lane < laneCount; lane++) {
+                copyLane(engine, slot, lane);
+            }
+        } else {
+            for (int i = 0; i < previousChangedCount; i++) {
+                copyLane(engine, slot, previousChanged[i]);
+            }
+            for (int i = 0; i < changedCount; i++) {
+                copyLane(engine, slot, engine.getChangedLane(i));
+            }
+        }
+
+        slot.version++;
+        front = back;
+
+        if (changedCount == laneCount) {
+            previousChangedCount = laneCount;
+        } else {
+            for (int i = 0; i < changedCount; i++) {
+                previousChanged[i] = engine.getChangedLane(i);
+            }
+            previousChangedCount = changedCount;
+        }
+    }
+
+    private static void copyLane(RaceEngine engine, Slot slot, int lane) {
+        slot.distance[lane] = engine.getDistance(lane);
+        slot.state[lane] = engine.hasFinished(lane) ? RaceFrame.FINISHED
+                : engine.hasFallen(lane) ? RaceFrame.FALLEN
+                : RaceFrame.RUNNING;
+    }
+
+    /**
+     * Copies the latest complete frame into the given frame.
+     */
+    public void read(RaceFrame into) {
+        if (into.distance.length != laneCount) {
+            throw new IllegalArgumentException("Frame has " + into.distance.length + " lanes, race has " + laneCount);
+        }
+
+        while (true) {
+            Slot slot = slots[front];
+            long version = slot.version;
+            if ((version & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            into.tick = slot.tick;
+            System.arraycopy(slot.distance, 0, into.distance, 0, laneCount);
+            System.arraycopy(slot.state, 0, into.state, 0, laneCount);
+
+            // Keep the copies above from moving past the version re-check
+            VarHandle.acquireFence();
+            if (slot.version == version) {
+                return;
+            }
+        }
+    }
+}
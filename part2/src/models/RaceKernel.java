@@ -0,0 +1,291 @@
+package models;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A compiled race: the lineup is turned into per-lane probability tables and primitive
+ * state arrays when the race starts, and every tick steps all lanes in one loop without
+ * touching Horse objects.
+ * The move and fall rules are the ones Race has always used; lanes are stepped in
+ * lane order with the move draw before the fall draw, so a given seed gives the same
+ * race through Race or through the kernel directly.
+ * <p>
+ * A kernel holds mutable race state and is not thread-safe; parallel simulations
+ * should compile one kernel per worker.
+ */
+public class RaceKernel implements RaceEngine {
+    private final int laneCount;
+    private final int length;
+
+    // Compiled probabilities: moveTable[lane * length + distance] and one fall chance per lane
+    private final double[] moveTable;
+    private final double[] fallChance;
+
+    // Per-lane race state
+    private final int[] distance;
+    private final boolean[] fallen;
+    private final boolean[] finished;
+    private final int[] finishTick;
+    private final int[] finishOrder;
+    private int finishedCount;
+    private int tick;
+
+    // Lanes still running, in lane order; only these are visited on a tick
+    private final int[] active;
+    private int runningCount;
+
+    // Lanes that moved or fell on the last step, in lane order
+    private final int[] changed;
+    private int changedCount;
+    private boolean allChanged;
+
+    // Above this many unfinished lanes, placings are counting-sorted by distance
+    private static final int INSERTION_SORT_LIMIT = 32;
+    private final int[] distanceCounts;
+
+    private RaceKernel(Track track, int laneCount) {
+        this.laneCount = laneCount;
+        this.length = track.getLength();
+        this.moveTable = new double[laneCount * Math.max(0, length)];
+        this.fallChance = new double[laneCount];
+        this.distance = new int[laneCount];
+        this.fallen = new boolean[laneCount];
+        this.finished = new boolean[laneCount];
+        this.finishTick = new int[laneCount];
+        this.finishOrder = new int[laneCount];
+        this.active = new int[laneCount];
+        this.changed = new int[laneCount];
+        this.distanceCounts = new int[Math.max(0, length) + 1];
+    }
+
+    /**
+     * Builds a kernel for the given lineup (one horse per lane, no gaps).
+     * This is the race compilation step: track and equipment modifiers are folded into a
+     * move probability for every distance a lane can be at, and a single fall probability,
+     * so a tick costs one table read per draw. The horses are only read, so the same
+     * lineup can be compiled by many workers.
+     */
+    public static RaceKernel compile(Track track, Horse[] lineup) {
+        double[] confidences = new double[lineup.length];
+        for (int lane = 0; lane < lineup.length; lane++) {
+            confidences[lane] = lineup[lane].getConfidence();
+        }
+        return compile(track, lineup, confidences);
+    }
+
+    /**
+     * Same as compile(track, lineup), but with each lane's base confidence taken from
+     * confidences instead of the horse, for simulations that carry form between races.
+     */
+    public static RaceKernel compile(Track track, Horse[] lineup, double[] confidences) {
+        return compile(track, lineup, confidences, ModelParameters.DEFAULT);
+    }
+
+    /**
+     * Same as compile(track, lineup, confidences), with the model constants taken from
+     * parameters instead of the defaults.
+     */
+    public static RaceKernel compile(Track track, Horse[] lineup, double[] confidences,
+                                     ModelParameters parameters) {
+        RaceKernel kernel = new RaceKernel(track, lineup.length);
+        int length = kernel.length;
+        double speedModifier = track.getSpeedModifier(parameters);
+        double fallRiskModifier = track.getFallRiskModifier(parameters);
+
+        double[] shapeAdjustment = new double[Math.max(0, length)];
+        for (int distance = 0; distance < length; distance++) {
+            shapeAdjustment[distance] = track.getShapeSpeedAdjustment(distance, parameters);
+        }
+
+        for (int lane = 0; lane < lineup.length; lane++) {
+            Horse horse = lineup[lane];
+            double equipmentSpeedMod = horse.calculateTotalSpeedModifier();
+            double equipmentEnduranceMod = horse.calculateTotalEnduranceModifier();
+            double equipmentConfidenceMod = horse.calculateTotalConfidenceModifier();
+            double effectiveConfidence = Math.min(1.0, confidences[lane] * equipmentConfidenceMod);
+
+            for (int distance = 0; distance < length; distance++) {
+                double moveChance = effectiveConfidence * speedModifier * shapeAdjustment[distance] * equipmentSpeedMod;
+                double raceProgress = (double) distance / length;
+                double enduranceEffect = 1.0 - (raceProgress * (1.0 - equipmentEnduranceMod));
+                kernel.moveTable[lane * length + distance] = moveChance * enduranceEffect;
+            }
+
+            kernel.fallChance[lane] = (parameters.getFallProbability() * effectiveConfidence * effectiveConfidence
+                    + fallRiskModifier) / equipmentConfidenceMod;
+        }
+
+        kernel.reset();
+        return kernel;
+    }
+
+    /**
+     * Puts every lane back at the start line.
+     */
+    @Override
+    public void reset() {
+        for (int lane = 0; lane < laneCount; lane++) {
+            distance[lane] = 0;
+            fallen[lane] = false;
+            finished[lane] = false;
+            finishTick[lane] = -1;
+            active[lane] = lane;
+        }
+        finishedCount = 0;
+        // A zero-length track has nothing to run, as in the original raceWonBy check
+        runningCount = length > 0 ? laneCount : 0;
+        allChanged = true;
+        tick = 0;
+    }
+
+    /**
+     * Advances every running lane by one tick. Only running lanes are visited, and they
+     * are compacted in place as they finish or fall, so a tick costs O(running lanes)
+     * however large the field.
+     *
+     * @return true once every lane has either finished or fallen
+     */
+    public boolean step(SplittableRandom random) {
+        tick++;
+        changedCount = 0;
+        allChanged = false;
+
+        int kept = 0;
+        for (int i = 0; i < runningCount; i++) {
+            int lane = active[i];
+
+            if (random.nextDouble() < moveTable[lane * length + distance[lane]]) {
+                changed[changedCount++] = lane;
+                if (++distance[lane] >= length) {
+                    // A horse that has just crossed the line is safe
+                    finished[lane] = true;
+                    finishTick[lane] = tick;
+                    finishOrder[finishedCount++] = lane;
+                    continue;
+                }
+            }
+
+            if (random.nextDouble() < fallChance[lane]) {
+                fallen[lane] = true;
+                if (changedCount == 0 || changed[changedCount - 1] != lane) {
+                    changed[changedCount++] = lane;
+                }
+                continue;
+            }
+
+            active[kept++] = lane;
+        }
+        runningCount = kept;
+
+        return runningCount == 0;
+    }
+
+    /**
+     * Steps until the race is over or maxTicks ticks have run.
+     *
+     * @return true if the race completed within maxTicks
+     */
+    @Override
+    public boolean run(SplittableRandom random, int maxTicks) {
+        boolean raceComplete = runningCount == 0;
+        while (!raceComplete && tick < maxTicks) {
+            raceComplete = step(random);
+        }
+        allChanged = true;
+        return raceComplete;
+    }
+
+    /**
+     * Writes the full placings into out (length laneCount): finishers in finish order,
+     * then every other lane by distance, furthest first, ties in lane order.
+     */
+    @Override
+    public void fillResultOrder(int[] out) {
+        System.arraycopy(finishOrder, 0, out, 0, finishedCount);
+        orderUnfinished(laneCount, distance, finished, finishedCount, out, distanceCounts);
+    }
+
+    /**
+     * Fills out from position finishedCount with every unfinished lane by distance,
+     * furthest first, ties in lane order. Small fields use an insertion sort; large ones
+     * a counting sort on distance (counts needs one slot per distance up to the track
+     * length), so placing a mass-start field stays linear.
+     */
+    static void orderUnfinished(int laneCount, int[] distance, boolean[] finished, int finishedCount,
+                                int[] out, int[] counts) {
+        if (laneCount - finishedCount <= INSERTION_SORT_LIMIT) {
+            int count = finishedCount;
+            for (int lane = 0; lane < laneCount; lane++) {
+                if (!finished[lane]) {
+                    // Stable insertion by distance, furthest first
+                    int i = count++;
+                    while (i > finishedCount && distance[out[i - 1]] < distance[lane]) {
+                        out[i] = out[i - 1];
+                        i--;
+                    }
+                    out[i] = lane;
+                }
+            }
+            return;
+        }
+
+        Arrays.fill(counts, 0);
+        for (int lane = 0; lane < laneCount; lane++) {
+            if (!finished[lane]) {
+                counts[distance[lane]]++;
+            }
+        }
+        int next = finishedCount;
+        for (int d = counts.length - 1; d >= 0; d--) {
+            int count = counts[d];
+            counts[d] = next;
+            next += count;
+        }
+        for (int lane = 0; lane < laneCount; lane++) {
+            if (!finished[lane]) {
+                out[counts[distance[lane]]++] = lane;
+            }
+        }
+    }
+
+    @Override
+    public int getLaneCount() { return laneCount; }
+
+    public int getLength() { return length; }
+
+    /** @return the chance the lane moves on a tick it starts at the given distance */
+    public double getMoveChance(int lane, int distance) { return moveTable[lane * length + distance]; }
+
+    /** @return the chance the lane falls on a tick it does not cross the line */
+    public double getFallChance(int lane) { return fallChance[lane]; }
+
+    @Override
+    public int getTick() { return tick; }
+
+    @Override
+    public int getDistance(int lane) { return distance[lane]; }
+
+    @Override
+    public boolean hasFallen(int lane) { return fallen[lane]; }
+
+    @Override
+    public boolean hasFinished(int lane) { return finished[lane]; }
+
+    /** @return the tick the lane crossed the line on, or -1 if it has not finished */
+    @Override
+    public int getFinishTick(int lane) { return finishTick[lane]; }
+
+    @Override
+    public int getFinishedCount() { return finishedCount; }
+
+    /** @return the lane that finished in the given 0-based position */
+    @Override
+    public int getFinisher(int position) { return finishOrder[position]; }
+
+    @Override
+    public int getChangedCount() { return allChanged ? laneCount : changedCount; }
+
+    @Override
+    public int getChangedLane(int i) { return allChanged ? i : changed[i]; }
+}
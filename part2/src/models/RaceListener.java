@@ -0,0 +1,10 @@
+package models;
+
+/**
+ * Receives a race's events synchronously on the thread running the race, in order.
+ * Listeners must return quickly; anything slow should hand off to another thread,
+ * for example through a RaceEventPublisher.
+ */
+public interface RaceListener {
+    void onRaceEvent(RaceEvent event);
+}
@@ -0,0 +1,262 @@
+package models;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+/**
+ * A recorded race, as written by RaceRecorder: a small header (race ID, seed, track
+ * and lineup) followed by one record per tick in which something happened. Ticks where
+ * nothing changed cost nothing, and a record costs a byte for the gap since the last
+ * one, a byte for the number of changes and about a byte per change, where a change is
+ * a lane moving one step or falling. Finishes are not logged; a lane has finished
+ * when it reaches the track length.
+ * <p>
+ * Body layout, all numbers unsigned varints:
+ * <pre>
+ *   record  := gap count change{count}      gap = ticks since the previous record, at least 1
+ *   change  := lane * 2 + (0 = moved, 1 = fell)
+ *   end     := 0 lastTick
+ * </pre>
+ */
+public class RaceLog {
+    static final int MAGIC = 0x48524C31; // "HRL1"
+
+    private final byte[] data;
+    private final String raceID;
+    private final long seed;
+    private final Track track;
+    private final char[] symbols;
+    private final String[] names;
+    private final double[] confidences;
+    private final int bodyOffset;
+
+    private RaceLog(byte[] data) throws IOException {
+        this.data = data;
+        ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+        DataInputStream in = new DataInputStream(bytes);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a race log");
+        }
+
+        this.raceID = in.readUTF();
+        this.seed = in.readLong();
+        String trackName = in.readUTF();
+        int laneCount = in.readInt();
+        int length = in.readInt();
+        Track.TrackShape shape = Track.TrackShape.valueOf(in.readUTF());
+        Track.TrackCondition condition = Track.TrackCondition.valueOf(in.readUTF());
+        this.track = new Track(trackName, laneCount, length, shape, condition);
+
+        this.symbols = new char[laneCount];
+        this.names = new String[laneCount];
+        this.confidences = new double[laneCount];
+        for (int lane = 0; lane < laneCount; lane++) {
+            symbols[lane] = in.readChar();
+            names[lane] = in.readUTF();
+            confidences[lane] = in.readDouble();
+        }
+        this.bodyOffset = data.length - bytes.available();
+    }
+
+    /**
+     * @throws IOException if the bytes are not a race log
+     */
+    public static RaceLog fromBytes(byte[] data) throws IOException {
+        return new RaceLog(data);
+    }
+
+    public byte[] toBytes() {
+        return data;
+    }
+
+    public String getRaceID() { return raceID; }
+
+    public long getSeed() { return seed; }
+
+    public Track getTrack() { return track; }
+
+    public int getLaneCount() { return names.length; }
+
+    public String getHorseName(int lane) { return names[lane]; }
+
+    public char getHorseSymbol(int lane) { return symbols[lane]; }
+
+    /** @return the horse's confidence when the race started */
+    public double getStartingConfidence(int lane) { return confidences[lane]; }
+
+    /**
+     * Builds a race with the logged ID, track and lineup, ready to be replayed.
+     * The horses are stand-ins carrying only name, symbol and starting confidence.
+     */
+    public Race createRace() {
+        Race race = new Race(track, seed, raceID);
+        for (int lane = 0; lane < names.length; lane++) {
+            race.addHorse(new Horse(symbols[lane], names[lane], confidences[lane], "", ""), lane + 1);
+        }
+        return race;
+    }
+
+    /**
+     * @return a fresh player positioned before the first tick
+     */
+    public Player player() {
+        return new Player();
+    }
+
+    /**
+     * Steps through the log one tick at a time, exposing the race state the same way
+     * the live engines do.
+     */
+    public class Player implements RaceEngine {
+        private final int laneCount = names.length;
+        private final int length = track.getLength();
+        private final int[] distance = new int[laneCount];
+        private final boolean[] fallen = new boolean[laneCount];
+        private final boolean[] finished = new boolean[laneCount];
+        private final int[] finishTick = new int[laneCount];
+        private final int[] finishOrder = new int[laneCount];
+        private final int[] distanceCounts = new int[Math.max(0, length) + 1];
+        private final int[] changed = new int[laneCount];
+        private int changedCount;
+        private boolean allChanged;
+        private int finishedCount;
+        private int tick;
+        private int position;
+        private int nextRecordTick;
+        private int lastTick;
+
+        private Player() {
+            reset();
+        }
+
+        @Override
+        public void reset() {
+            for (int lane = 0; lane < laneCount; lane++) {
+                distance[lane] = 0;
+                fallen[lane] = false;
+                finished[lane] = false;
+                finishTick[lane] = -1;
+            }
+            finishedCount = 0;
+            allChanged = true;
+            tick = 0;
+            position = bodyOffset;
+            nextRecordTick = 0;
+            readNextRecordTick();
+        }
+
+        /**
+         * Advances one logged tick.
+         *
+         * @return true once the last tick of the log has been played
+         */
+        public boolean step() {
+            if (isComplete()) {
+                return true;
+            }
+            tick++;
+            changedCount = 0;
+            allChanged = false;
+            if (tick == nextRecordTick) {
+                int count = readVarint();
+                for (int i = 0; i < count; i++) {
+                    apply(readVarint());
+                }
+                readNextRecordTick();
+            }
+            return isComplete();
+        }
+
+        public boolean isComplete() {
+            return nextRecordTick < 0 && tick >= lastTick;
+        }
+
+        /**
+         * Plays up to maxTicks ticks; the random source is not used.
+         *
+         * @return true if the log was played to the end
+         */
+        @Override
+        public boolean run(SplittableRandom random, int maxTicks) {
+            boolean complete = isComplete();
+            while (!complete && tick < maxTicks) {
+                complete = step();
+            }
+            allChanged = true;
+            return complete;
+        }
+
+        private void apply(int change) {
+            int lane = change >>> 1;
+            if (changedCount == 0 || changed[changedCount - 1] != lane) {
+                changed[changedCount++] = lane;
+            }
+            if ((change & 1) == 1) {
+                fallen[lane] = true;
+            } else if (++distance[lane] >= length) {
+                finished[lane] = true;
+                finishTick[lane] = tick;
+                finishOrder[finishedCount++] = lane;
+            }
+        }
+
+        private void readNextRecordTick() {
+            int gap = readVarint();
+            if (gap == 0) {
+                nextRecordTick = -1;
+                lastTick = readVarint();
+            } else {
+                nextRecordTick += gap;
+            }
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[position++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        @Override
+        public void fillResultOrder(int[] out) {
+            System.arraycopy(finishOrder, 0, out, 0, finishedCount);
+            RaceKernel.orderUnfinished(laneCount, distance, finished, finishedCount, out, distanceCounts);
+        }
+
+        @Override
+        public int getLaneCount() { return laneCount; }
+
+        @Override
+        public int getTick() { return tick; }
+
+        @Override
+        public int getDistance(int lane) { return distance[lane]; }
+
+        @Override
+        public boolean hasFallen(int lane) { return fallen[lane]; }
+
+        @Override
+        public boolean hasFinished(int lane) { return finished[lane]; }
+
+        @Override
+        public int getFinishTick(int lane) { return finishTick[lane]; }
+
+        @Override
+        public int getFinishedCount() { return finishedCount; }
+
+        @Override
+        public int getFinisher(int position) { return finishOrder[position]; }
+
+        @Override
+        public int getChangedCount() { return allChanged ? laneCount : changedCount; }
+
+        @Override
+        public int getChangedLane(int i) { return allChanged ? i : changed[i]; }
+    }
+}
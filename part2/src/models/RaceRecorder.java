@@ -0,0 +1,112 @@
+package models;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Records a race into a RaceLog as it runs. Attach one recorder per run before the race
+ * starts; the log is available from getLog() once RACE_COMPLETE has been seen.
+ * <p>
+ * Lane changes are buffered until the tick's TICK event and then written as one record,
+ * so the per-tick cost is a few array writes and no allocation.
+ */
+public class RaceRecorder implements RaceListener {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+    private final int[] lastDistance;
+    private int[] changes;
+    private int changeCount;
+    private int lastRecordTick;
+    private volatile RaceLog log;
+
+    public RaceRecorder(Race race) {
+        Horse[] lanes = race.getLanes();
+        Track track = race.getTrack();
+        this.lastDistance = new int[lanes.length];
+        this.changes = new int[Math.max(4, lanes.length * 2)];
+
+        try {
+            DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(RaceLog.MAGIC);
+            header.writeUTF(race.getRaceID());
+            header.writeLong(race.getSeed());
+            header.writeUTF(track.getName());
+            header.writeInt(lanes.length);
+            header.writeInt(track.getLength());
+            header.writeUTF(track.getShape().name());
+            header.writeUTF(track.getCondition().name());
+            for (Horse horse : lanes) {
+                header.writeChar(horse.getSymbol());
+                header.writeUTF(horse.getName());
+                header.writeDouble(horse.getConfidence());
+            }
+            header.flush();
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void onRaceEvent(RaceEvent event) {
+        if (log != null) {
+            return;
+        }
+
+        switch (event.getType()) {
+            case MOVED -> {
+                int lane = event.getLane();
+                for (int d = lastDistance[lane]; d < event.getDistance(); d++) {
+                    addChange(lane << 1);
+                }
+                lastDistance[lane] = event.getDistance();
+            }
+            case FELL -> addChange((event.getLane() << 1) | 1);
+            case TICK -> {
+                if (changeCount > 0) {
+                    writeVarint(event.getTick() - lastRecordTick);
+                    writeVarint(changeCount);
+                    for (int i = 0; i < changeCount; i++) {
+                        writeVarint(changes[i]);
+                    }
+                    lastRecordTick = event.getTick();
+                    changeCount = 0;
+                }
+            }
+            case RACE_COMPLETE -> {
+                writeVarint(0);
+                writeVarint(event.getTick());
+                try {
+                    log = RaceLog.fromBytes(out.toByteArray());
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * @return the finished log, or null if the race has not completed yet
+     */
+    public RaceLog getLog() {
+        return log;
+    }
+
+    private void addChange(int change) {
+        if (changeCount == changes.length) {
+            changes = Arrays.copyOf(changes, changes.length * 2);
+        }
+        changes[changeCount++] = change;
+    }
+
+    private void writeVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
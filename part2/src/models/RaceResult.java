@@ -0,0 +1,87 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything a finished race needs to persist, captured once on the race thread so it
+ * can be written later from another thread: one entry per horse in placing order and
+ * the winner's time for the track record.
+ */
+public class RaceResult {
+
+    /**
+     * One horse's line in races.csv, plus the confidence it carries out of the race.
+     */
+    public static class Entry {
+        private final String horseName;
+        private final char symbol;
+        private final double confidence;
+        private final double newConfidence;
+        private final int distanceTravelled;
+        private final int position;
+        private final long finishTime;
+
+        public Entry(String horseName, char symbol, double confidence, double newConfidence,
+              int distanceTravelled, int position, long finishTime) {
+            this.horseName = horseName;
+            this.symbol = symbol;
+            this.confidence = confidence;
+            this.newConfidence = newConfidence;
+            this.distanceTravelled = distanceTravelled;
+            this.position = position;
+            this.finishTime = finishTime;
+        }
+
+        public String getHorseName() { return horseName; }
+
+        public char getSymbol() { return symbol; }
+
+        /** @return confidence going into the race */
+        public double getConfidence() { return confidence; }
+
+        /** @return confidence after the race's adjustment */
+        public double getNewConfidence() { return newConfidence; }
+
+        public int getDistanceTravelled() { return distanceTravelled; }
+
+        public int getPosition() { return position; }
+
+        /** @return finish time in milliseconds, or -1 if the horse did not finish */
+        public long getFinishTime() { return finishTime; }
+    }
+
+    private final String raceID;
+    private final String trackName;
+    private final Track.TrackCondition trackCondition;
+    private final List<Entry> entries;
+    private final String winnerName;
+    private final long winnerTime;
+
+    public RaceResult(String raceID, String trackName, Track.TrackCondition trackCondition,
+               List<Entry> entries, String winnerName, long winnerTime) {
+        this.raceID = raceID;
+        this.trackName = trackName;
+        this.trackCondition = trackCondition;
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+        this.winnerName = winnerName;
+        this.winnerTime = winnerTime;
+    }
+
+    public String getRaceID() { return raceID; }
+
+    public String getTrackName() { return trackName; }
+
+    public Track.TrackCondition getTrackCondition() { return trackCondition; }
+
+    /** @return one entry per horse, in placing order */
+    public List<Entry> getEntries() { return entries; }
+
+    public boolean hasWinner() { return winnerName != null; }
+
+    /** @return the winner's name, or null if every horse fell */
+    public String getWinnerName() { return winnerName; }
+
+    public long getWinnerTime() { return winnerTime; }
+}
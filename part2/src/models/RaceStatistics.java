@@ -1,5 +1,6 @@
 package models;
 
+import utils.DataRepository;
 import utils.FileIO;
 
 import java.util.*;
@@ -20,24 +21,41 @@ public class RaceStatistics {
 
     public static void updateTrackRecords(String trackName,
             long raceDuration, String horseName) {
-        List<Track> tracks = FileIO.loadTracks();
-        Track targetTrack = null;
-        
-        for (Track track : tracks) {
-            if (track.getName().equals(trackName)) {
-                targetTrack = track;
-                break;
-            }
-        }
+        DataRepository repository = DataRepository.getInstance();
+        Track targetTrack = repository.findTrack(trackName);
         
         if (targetTrack != null) {
             if (targetTrack.getBestTime() == 0 || raceDuration < targetTrack.getBestTime()) {
                 targetTrack.setBestTime(raceDuration);
                 targetTrack.setBestHorse(horseName);
-                FileIO.saveTracks(tracks);
+                repository.markTracksDirty();
             }
         }
     }
 
+    /**
+     * Applies the winners of several races to the repository's track records, leaving
+     * at most one save of tracks.csv to the repository's write-back.
+     */
+    public static void updateTrackRecords(List<RaceResult> results) {
+        DataRepository repository = DataRepository.getInstance();
+        boolean changed = false;
+
+        for (RaceResult result : results) {
+            if (!result.hasWinner()) {
+                continue;
+            }
+            Track track = repository.findTrack(result.getTrackName());
+            if (track != null
+                    && (track.getBestTime() == 0 || result.getWinnerTime() < track.getBestTime())) {
+                track.setBestTime(result.getWinnerTime());
+                track.setBestHorse(result.getWinnerName());
+                changed = true;
+            }
+        }
 
+        if (changed) {
+            repository.markTracksDirty();
+        }
+    }
 } 
\ No newline at end of file
@@ -52,27 +52,31 @@ public class Track {
     public void setBestHorse(String bestHorse) { this.bestHorse = bestHorse;}
 
     public double getSpeedModifier() {
-        return switch (condition) {
-            case MUDDY -> 0.8;
-            case DRY -> 1.0;
-            case ICY -> 0.6;
-        };
+        return getSpeedModifier(ModelParameters.DEFAULT);
+    }
+
+    public double getSpeedModifier(ModelParameters parameters) {
+        return parameters.getSpeedModifier(condition);
     }
 
     public double getFallRiskModifier() {
-        return switch (condition) {
-            case MUDDY -> 0.1;
-            case DRY -> 0.0;
-            case ICY -> 0.3;
-        };
+        return getFallRiskModifier(ModelParameters.DEFAULT);
+    }
+
+    public double getFallRiskModifier(ModelParameters parameters) {
+        return parameters.getFallRiskModifier(condition);
     }
 
     public double getShapeSpeedAdjustment(int distanceTravelled) {
+        return getShapeSpeedAdjustment(distanceTravelled, ModelParameters.DEFAULT);
+    }
+
+    public double getShapeSpeedAdjustment(int distanceTravelled, ModelParameters parameters) {
         return switch (shape) {
             case OVAL -> 1.0;
             case FIGURE_EIGHT -> {
                 if (distanceTravelled % (length / 2) == 0) {
-                    yield 0.7;
+                    yield parameters.getFigureEightAdjustment();
                 }
                 yield 1.0;
             }
@@ -32,6 +32,13 @@ public class Transaction {
         this.amount = amount;
     }
     
+    /**
+     * @return the amount as it changes the balance: deposits and winnings add, bets subtract
+     */
+    public double getBalanceChange() {
+        return type == TransactionType.BET ? -amount : amount;
+    }
+
     public String getDate() {
         return dateTime.format(DATE_FORMATTER);
     }
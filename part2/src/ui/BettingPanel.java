@@ -4,13 +4,14 @@ import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
+import java.util.Arrays;
 import java.util.List;
 
 import models.Race;
 import models.Horse;
 import models.Transaction;
 import models.BetManager;
-import utils.FileIO;
+import utils.DataRepository;
 import utils.BettingOdds;
 
 public class BettingPanel extends JPanel {
@@ -35,6 +36,9 @@ public class BettingPanel extends JPanel {
     private JButton removeBetButton;
     private JButton startRaceButton;
     private JButton backButton;
+    // The race's horses in lane order and their odds; laneOdds is null while being priced
+    private Horse[] lineup;
+    private double[] laneOdds;
     
     public BettingPanel(BetManager betManager) {
         this.betManager = betManager;
@@ -214,17 +218,82 @@ public class BettingPanel extends JPanel {
         selectedHorsesModel.setRowCount(0);
         currentBetsModel.setRowCount(0);
         
-        for (Horse horse : race.getLanes()) {
-            if (horse != null) {
-                double odds = BettingOdds.calculateOdds(horse, race.getTrack());
-                selectedHorsesModel.addRow(new Object[]{
-                    horse.getName(),
-                    String.valueOf(horse.getSymbol()),
-                    BettingOdds.formatOdds(odds),
-                    ""
-                });
+        lineup = Arrays.stream(race.getLanes())
+            .filter(horse -> horse != null)
+            .toArray(Horse[]::new);
+        laneOdds = BettingOdds.getCachedOdds(race.getTrack(), lineup);
+        
+        for (int lane = 0; lane < lineup.length; lane++) {
+            selectedHorsesModel.addRow(new Object[]{
+                lineup[lane].getName(),
+                String.valueOf(lineup[lane].getSymbol()),
+                laneOdds != null ? BettingOdds.formatOdds(laneOdds[lane]) : "Pricing...",
+                ""
+            });
+        }
+        
+        if (laneOdds == null) {
+            priceRace(race);
+        }
+    }
+    
+    /**
+     * Simulates the race off the EDT and fills in the odds column when done.
+     * Betting is disabled until the odds are known.
+     */
+    private void priceRace(Race race) {
+        Horse[] pricedLineup = lineup;
+        addBetButton.setEnabled(false);
+        startRaceButton.setEnabled(false);
+        
+        new SwingWorker<double[], Void>() {
+            @Override
+            protected double[] doInBackground() {
+                return BettingOdds.calculateOdds(race.getTrack(), pricedLineup);
+            }
+            
+            @Override
+            protected void done() {
+                // The panel may have moved on to another race while this one was priced
+                if (race != currentRace) {
+                    return;
+                }
+                try {
+                    laneOdds = get();
+                    for (int row = 0; row < selectedHorsesModel.getRowCount(); row++) {
+                        Horse horse = findHorse((String) selectedHorsesModel.getValueAt(row, 0),
+                            (String) selectedHorsesModel.getValueAt(row, 1));
+                        if (horse != null) {
+                            selectedHorsesModel.setValueAt(BettingOdds.formatOdds(oddsFor(horse)), row, 2);
+                        }
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error pricing race: " + e.getMessage());
+                    showError("Could not calculate odds for this race");
+                    return;
+                }
+                addBetButton.setEnabled(true);
+                startRaceButton.setEnabled(true);
+            }
+        }.execute();
+    }
+    
+    private Horse findHorse(String horseName, String symbol) {
+        for (Horse h : lineup) {
+            if (h.getName().equals(horseName) && String.valueOf(h.getSymbol()).equals(symbol)) {
+                return h;
             }
         }
+        return null;
+    }
+    
+    private double oddsFor(Horse horse) {
+        for (int lane = 0; lane < lineup.length; lane++) {
+            if (lineup[lane] == horse) {
+                return laneOdds[lane];
+            }
+        }
+        return lineup.length;
     }
     
     private void addSelectedBets() {
@@ -256,16 +325,10 @@ public class BettingPanel extends JPanel {
                 String horseName = (String) selectedHorsesModel.getValueAt(row, 0);
                 String symbol = (String) selectedHorsesModel.getValueAt(row, 1);
 
-                Horse horse = null;
-                for (Horse h : currentRace.getLanes()) {
-                    if (h.getName().equals(horseName) && String.valueOf(h.getSymbol()).equals(symbol)) {
-                        horse = h;
-                        break;
-                    }
-                }
+                Horse horse = findHorse(horseName, symbol);
                 
                 if (horse != null) {
-                    double odds = BettingOdds.calculateOdds(horse, currentRace.getTrack());
+                    double odds = oddsFor(horse);
                     double potentialWin = BettingOdds.calculatePotentialWinnings(betAmount, odds);
                     
                     currentBetsModel.addRow(new Object[]{
@@ -356,7 +419,7 @@ public class BettingPanel extends JPanel {
                 try {
                     double amount = Double.parseDouble(amountStr);
                     if (amount > 0) {
-                        if (!betManager.placeBet(currentRace, horse, amount)) {
+                        if (!betManager.placeBet(currentRace, horse, amount, oddsFor(horse))) {
                             showError("Failed to place bet on " + horse.getName());
                             return;
                         }
@@ -381,10 +444,10 @@ public class BettingPanel extends JPanel {
     }
     
     private void updateBalanceFromTransactions() {
-        List<Transaction> transactions = FileIO.loadTransactions();
+        List<Transaction> transactions = DataRepository.getInstance().getTransactions();
         if (transactions != null) {
             currentBalance = transactions.stream()
-                .mapToDouble(t -> t.getType() == Transaction.TransactionType.DEPOSIT ? t.getAmount() : -t.getAmount())
+                .mapToDouble(Transaction::getBalanceChange)
                 .sum();
             updateBalanceLabel();
         }
@@ -2,7 +2,10 @@ package ui;
 
 import models.Horse;
 import models.HorseItem;
+import models.Track;
+import utils.DataRepository;
 import utils.FileIO;
+import utils.LoadoutOptimizer;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
@@ -19,12 +22,13 @@ public class HorseCustomizerPanel extends JPanel {
     private JButton createHorseBtn;
     private JButton customizeEquipmentBtn;
     private JButton backButton;
+    private final LoadoutOptimizer loadoutOptimizer = new LoadoutOptimizer();
 
     public HorseCustomizerPanel() {
         setLayout(new BorderLayout(10, 20));
         setBackground(new Color(70, 130, 180));
         
-        horses = new ArrayList<>(List.of(FileIO.ingestHorses()));
+        horses = new ArrayList<>(List.of(DataRepository.getInstance().getHorses()));
 
         JPanel headerPanel = createHeaderPanel();
         add(headerPanel, BorderLayout.NORTH);
@@ -164,7 +168,7 @@ public class HorseCustomizerPanel extends JPanel {
             );
 
             horses.add(newHorse);
-            FileIO.saveHorses(horses.toArray(new Horse[0]));
+            DataRepository.getInstance().setHorses(horses.toArray(new Horse[0]));
             updateHorseTable();
             dialog.dispose();
         });
@@ -226,11 +230,15 @@ public class HorseCustomizerPanel extends JPanel {
         equipmentButtons.setBackground(Color.WHITE);
         JButton addEquipmentBtn = createStyledButton("Add Equipment");
         JButton removeEquipmentBtn = createStyledButton("Remove Equipment");
+        JButton suggestLoadoutBtn = createStyledButton("Suggest Loadout");
         equipmentButtons.add(addEquipmentBtn);
         equipmentButtons.add(removeEquipmentBtn);
+        equipmentButtons.add(suggestLoadoutBtn);
+
+        suggestLoadoutBtn.addActionListener(e -> showLoadoutSuggestion(dialog, selectedHorse, equipmentModel));
 
         addEquipmentBtn.addActionListener(e -> {
-            List<HorseItem> availableEquipment = FileIO.loadEquipment();
+            List<HorseItem> availableEquipment = DataRepository.getInstance().getEquipment();
             List<HorseItem> currentEquipment = selectedHorse.getEquipment();
             
             List<HorseItem> newEquipment = availableEquipment.stream()
@@ -276,9 +284,8 @@ public class HorseCustomizerPanel extends JPanel {
                 int selectedIndex = availableEquipmentList.getSelectedIndex();
                 if (selectedIndex != -1) {
                     HorseItem selectedEquipment = newEquipment.get(selectedIndex);
-                    selectedHorse.addEquipment(selectedEquipment);
+                    DataRepository.getInstance().editHorse(selectedHorse, h -> h.addEquipment(selectedEquipment));
                     equipmentModel.addElement(selectedEquipment.getName());
-                    FileIO.saveHorses(horses.toArray(new Horse[0]));
                     updateHorseTable();
                 }
                 addDialog.dispose();
@@ -300,9 +307,8 @@ public class HorseCustomizerPanel extends JPanel {
             int selectedIndex = equipmentList.getSelectedIndex();
             if (selectedIndex != -1) {
                 String itemName = equipmentModel.getElementAt(selectedIndex);
-                selectedHorse.removeEquipment(itemName);
+                DataRepository.getInstance().editHorse(selectedHorse, h -> h.removeEquipment(itemName));
                 equipmentModel.remove(selectedIndex);
-                FileIO.saveHorses(horses.toArray(new Horse[0]));
                 updateHorseTable();
             }
         });
@@ -338,7 +344,7 @@ public class HorseCustomizerPanel extends JPanel {
         accessoriesButtons.add(removeAccessoryBtn);
 
         addAccessoryBtn.addActionListener(e -> {
-            List<HorseItem> availableAccessories = FileIO.loadAccessories();
+            List<HorseItem> availableAccessories = DataRepository.getInstance().getAccessories();
             List<HorseItem> currentAccessories = selectedHorse.getAccessories();
             
             List<HorseItem> newAccessories = availableAccessories.stream()
@@ -384,9 +390,8 @@ public class HorseCustomizerPanel extends JPanel {
                 int selectedIndex = accessoryList.getSelectedIndex();
                 if (selectedIndex != -1) {
                     HorseItem selectedAccessory = newAccessories.get(selectedIndex);
-                    selectedHorse.addAccessory(selectedAccessory);
+                    DataRepository.getInstance().editHorse(selectedHorse, h -> h.addAccessory(selectedAccessory));
                     accessoriesModel.addElement(selectedAccessory.getName());
-                    FileIO.saveHorses(horses.toArray(new Horse[0]));
                 }
                 addDialog.dispose();
             });
@@ -407,9 +412,8 @@ public class HorseCustomizerPanel extends JPanel {
             int selectedIndex = accessoriesList.getSelectedIndex();
             if (selectedIndex != -1) {
                 String accessoryName = accessoriesModel.getElementAt(selectedIndex);
-                selectedHorse.removeAccessory(accessoryName);
+                DataRepository.getInstance().editHorse(selectedHorse, h -> h.removeAccessory(accessoryName));
                 accessoriesModel.remove(selectedIndex);
-                FileIO.saveHorses(horses.toArray(new Horse[0]));
             } else {
                 JOptionPane.showMessageDialog(dialog,
                     "Please select an accessory to remove",
@@ -438,6 +442,101 @@ public class HorseCustomizerPanel extends JPanel {
         dialog.setVisible(true);
     }
 
+    private void showLoadoutSuggestion(JDialog parent, Horse horse, DefaultListModel<String> equipmentModel) {
+        List<Track> tracks = DataRepository.getInstance().getTracks();
+        if (tracks.isEmpty()) {
+            JOptionPane.showMessageDialog(parent,
+                "Add a track before asking for a loadout",
+                "No Tracks",
+                JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        JComboBox<String> trackSelector = new JComboBox<>(tracks.stream().map(Track::getName).toArray(String[]::new));
+        JComboBox<Track.TrackCondition> conditionSelector = new JComboBox<>(Track.TrackCondition.values());
+        conditionSelector.setSelectedItem(Track.TrackCondition.DRY);
+
+        List<Horse> opponents = new ArrayList<>(horses);
+        opponents.remove(horse);
+        JList<String> opponentList = new JList<>(opponents.stream().map(Horse::getName).toArray(String[]::new));
+        opponentList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        opponentList.setSelectionInterval(0, Math.min(2, opponents.size()) - 1);
+
+        JPanel inputPanel = new JPanel(new BorderLayout(5, 5));
+        JPanel selectors = new JPanel(new GridLayout(2, 2, 5, 5));
+        selectors.add(new JLabel("Track:"));
+        selectors.add(trackSelector);
+        selectors.add(new JLabel("Condition:"));
+        selectors.add(conditionSelector);
+        inputPanel.add(selectors, BorderLayout.NORTH);
+        inputPanel.add(new JLabel("Opponents:"), BorderLayout.CENTER);
+        JScrollPane opponentScroll = new JScrollPane(opponentList);
+        opponentScroll.setPreferredSize(new Dimension(250, 120));
+        inputPanel.add(opponentScroll, BorderLayout.SOUTH);
+
+        int choice = JOptionPane.showConfirmDialog(parent, inputPanel, "Suggest Loadout",
+            JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (choice != JOptionPane.OK_OPTION || opponentList.getSelectedIndices().length == 0) {
+            return;
+        }
+
+        Track venue = tracks.get(trackSelector.getSelectedIndex());
+        Track track = new Track(venue.getName(), venue.getLaneCount(), venue.getLength(), venue.getShape(),
+            (Track.TrackCondition) conditionSelector.getSelectedItem());
+        Horse[] field = opponentList.getSelectedValuesList().stream()
+            .map(name -> opponents.stream().filter(h -> h.getName().equals(name)).findFirst().orElseThrow())
+            .toArray(Horse[]::new);
+
+        parent.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<LoadoutOptimizer.Suggestion, Void>() {
+            @Override
+            protected LoadoutOptimizer.Suggestion doInBackground() {
+                return loadoutOptimizer.optimize(horse, field, track);
+            }
+
+            @Override
+            protected void done() {
+                parent.setCursor(Cursor.getDefaultCursor());
+                LoadoutOptimizer.Suggestion suggestion;
+                try {
+                    suggestion = get();
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(parent,
+                        "Could not compute a loadout: " + ex.getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+
+                String items = suggestion.getLoadout().isEmpty() ? "No equipment"
+                    : String.join(", ", suggestion.getLoadout().stream().map(HorseItem::getName).toArray(String[]::new));
+                String message = String.format("<html>Best loadout: <b>%s</b><br>"
+                        + "Win chance: %.1f%% (current equipment: %.1f%%)<br><br>Apply this loadout?</html>",
+                    items, 100 * suggestion.getWinProbability(), 100 * suggestion.getCurrentWinProbability());
+                int apply = JOptionPane.showConfirmDialog(parent, message, "Suggested Loadout",
+                    JOptionPane.YES_NO_OPTION, JOptionPane.INFORMATION_MESSAGE);
+                if (apply != JOptionPane.YES_OPTION) {
+                    return;
+                }
+
+                List<HorseItem> loadout = suggestion.getLoadout();
+                DataRepository.getInstance().editHorse(horse, h -> {
+                    for (HorseItem item : new ArrayList<>(h.getEquipment())) {
+                        h.removeEquipment(item.getName());
+                    }
+                    for (HorseItem item : loadout) {
+                        h.addEquipment(item);
+                    }
+                });
+                equipmentModel.clear();
+                for (HorseItem item : loadout) {
+                    equipmentModel.addElement(item.getName());
+                }
+                updateHorseTable();
+            }
+        }.execute();
+    }
+
     private void updateHorseTable() {
         tableModel.setRowCount(0);
 
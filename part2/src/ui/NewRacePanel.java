@@ -6,7 +6,7 @@ import models.Race;
 import javax.swing.*;
 import java.awt.*;
 import java.util.List;
-import utils.FileIO;
+import utils.DataRepository;
 import static ui.Button.createStyledButton;
 
 public class NewRacePanel extends JPanel {
@@ -93,7 +93,7 @@ public class NewRacePanel extends JPanel {
         selectorsPanel.removeAll();
         horsesPanel.removeAll();
 
-        List<Track> tracks = FileIO.loadTracks();
+        List<Track> tracks = DataRepository.getInstance().getTracks();
         String[] trackNames = tracks.stream()
                 .map(Track::getName)
                 .toArray(String[]::new);
@@ -118,7 +118,7 @@ public class NewRacePanel extends JPanel {
         selectorsPanel.add(weatherLabel);
         selectorsPanel.add(weatherSelector);
 
-        horses = FileIO.ingestHorses();
+        horses = DataRepository.getInstance().getHorses();
         horseCheckboxes = new JCheckBox[horses.length];
         confidenceLabels = new JLabel[horses.length];
         for (int i = 0; i < horses.length; i++) {
@@ -168,11 +168,8 @@ public class NewRacePanel extends JPanel {
         String selectedTrackName = (String) trackSelector.getSelectedItem();
         String selectedWeather = (String) weatherSelector.getSelectedItem();
         Track.TrackCondition condition = Track.TrackCondition.valueOf(selectedWeather.toUpperCase());
-        List<Track> tracks = FileIO.loadTracks();
-        Track selectedTrack = tracks.stream()
-                .filter(t -> t.getName().equals(selectedTrackName))
-                .findFirst()
-                .orElse(null);
+        DataRepository repository = DataRepository.getInstance();
+        Track selectedTrack = repository.findTrack(selectedTrackName);
 
         if (selectedTrack == null) {
 
@@ -184,8 +181,6 @@ public class NewRacePanel extends JPanel {
             return;
         }
 
-        selectedTrack.setCondition(condition);
-
         String[] selectedHorseNames = getSelectedHorses();
         if (selectedHorseNames.length == 0) {
             JOptionPane.showMessageDialog(this,
@@ -200,20 +195,13 @@ public class NewRacePanel extends JPanel {
             selectedHorseNames.length,
             selectedTrack.getLength(),
             selectedTrack.getShape(),
-            selectedTrack.getCondition()
+            condition
         );
         currentRace = new Race(raceTrack);
-        Horse[] allHorses = FileIO.ingestHorses();
         
         int lane = 1;
         for (String horseName : selectedHorseNames) {
-            Horse selectedHorse = null;
-            for (Horse horse : allHorses) {
-                if (horse.getName().equals(horseName)) {
-                    selectedHorse = horse;
-                    break;
-                }
-            }
+            Horse selectedHorse = repository.findHorse(horseName);
             
             if (selectedHorse != null) {
                 currentRace.addHorse(selectedHorse, lane++);
@@ -1,18 +1,28 @@
 package ui;
 
 import models.Race;
+import models.RaceEventPublisher;
+import models.RaceLog;
+import models.RaceRecorder;
 import models.BetManager;
+import utils.FileIO;
+import utils.LiveOddsPricer;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
 
 import static ui.Button.createStyledButton;
 
 
 public class RaceSimulationPanel extends JPanel {
+    private static final int EVENT_BUFFER_SIZE = 256;
     private RaceVisualizationPanel visualPanel;
     private Race currentRace;
     private BetManager betManager;
+    private JButton replayButton;
+    // The last race run here that was saved for replay
+    private String lastRaceID;
 
     public RaceSimulationPanel(BetManager betManager) {
         setLayout(new BorderLayout(10, 20));
@@ -35,6 +45,11 @@ public class RaceSimulationPanel extends JPanel {
         backButton.addActionListener(e -> goBack());
         buttonPanel.add(backButton);
 
+        replayButton = createStyledButton("Replay Race");
+        replayButton.setEnabled(false);
+        replayButton.addActionListener(e -> replayLastRace());
+        buttonPanel.add(replayButton);
+
         add(buttonPanel, BorderLayout.SOUTH);
     }
 
@@ -45,17 +60,76 @@ public class RaceSimulationPanel extends JPanel {
 
     public void startRace(Race race) {
         if (race != null) {
+            replayButton.setEnabled(false);
             visualPanel.startRace();
+
+            RaceEventPublisher publisher = new RaceEventPublisher(EVENT_BUFFER_SIZE,
+                    RaceEventPublisher.Backpressure.BLOCK);
+            publisher.subscribe(visualPanel.createRaceSubscriber());
+            race.addRaceListener(publisher);
+            race.addRaceListener(betManager);
+            RaceRecorder recorder = new RaceRecorder(race);
+            race.addRaceListener(recorder);
+            LiveOddsPricer pricer = new LiveOddsPricer(race,
+                    quote -> SwingUtilities.invokeLater(() -> visualPanel.setLiveQuote(quote)));
+            race.addRaceListener(pricer);
+
             new Thread(() -> {
                 race.startRace();
+                race.removeRaceListener(publisher);
+                race.removeRaceListener(betManager);
+                race.removeRaceListener(recorder);
+                race.removeRaceListener(pricer);
+                pricer.close();
+                boolean saved = recorder.getLog() != null
+                        && FileIO.saveRaceLog(race.getRaceID(), recorder.getLog().toBytes());
                 SwingUtilities.invokeLater(() -> {
-                    visualPanel.stopRace();
+                    if (saved) {
+                        lastRaceID = race.getRaceID();
+                    }
+                    replayButton.setEnabled(lastRaceID != null);
                     visualPanel.showRaceResults(race);
                 });
             }).start();
         }
     }
 
+    /**
+     * Plays a recorded race on the track view at the given speed (1.0 is race pace).
+     */
+    public void replayRace(RaceLog log, double speed) {
+        Race race = log.createRace();
+        setRace(race);
+        replayButton.setEnabled(false);
+        visualPanel.startRace();
+
+        RaceEventPublisher publisher = new RaceEventPublisher(EVENT_BUFFER_SIZE,
+                RaceEventPublisher.Backpressure.BLOCK);
+        publisher.subscribe(visualPanel.createRaceSubscriber());
+        race.addRaceListener(publisher);
+
+        new Thread(() -> {
+            race.replay(log, speed);
+            race.removeRaceListener(publisher);
+            SwingUtilities.invokeLater(() -> replayButton.setEnabled(true));
+        }).start();
+    }
+
+    private void replayLastRace() {
+        byte[] data = FileIO.loadRaceLog(lastRaceID);
+        if (data == null) {
+            JOptionPane.showMessageDialog(this, "The recording of race " + lastRaceID + " is gone.",
+                    "Replay", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        try {
+            replayRace(RaceLog.fromBytes(data), 1.0);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Could not read race " + lastRaceID + ": " + e.getMessage(),
+                    "Replay", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     private void goBack() {
         CardLayout cardLayout = (CardLayout) getParent().getLayout();
         cardLayout.show(getParent(), "MAIN");
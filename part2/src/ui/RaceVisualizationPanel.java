@@ -1,10 +1,14 @@
 package ui;
 
 import models.Race;
+import models.RaceEvent;
+import models.RaceFrame;
 import models.Horse;
 import models.Track;
 import models.Bet;
 import models.BetManager;
+import utils.BettingOdds;
+import utils.LiveOddsPricer;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
@@ -14,18 +18,21 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Flow;
 
 public class RaceVisualizationPanel extends JPanel {
     private Race currentRace;
     private Map<Horse, Point> horsePositions;
     private Map<Horse, List<BufferedImage>> horseFrames;
     private Map<Horse, Integer> currentFrameIndices;
+    // Reused for every repaint; refilled from the race's frame buffer
+    private RaceFrame frame;
+    // Latest in-running prices, if the race is being priced
+    private LiveOddsPricer.Quote liveQuote;
     private BufferedImage trackBackground;
-    private Timer animationTimer;
     private final int TRACK_HEIGHT = 600;
     private final int VERTICAL_SPACING = 25;
     private final int START_X = 50;
-    private final int ANIMATION_DELAY = 100;
     private final Font nameFont = new Font("Arial", Font.BOLD, 12);
     private final Font trackInfoFont = new Font("Arial", Font.BOLD, 14);
     private final Color GRASS_COLOR = new Color(76, 175, 80);
@@ -41,12 +48,39 @@ public class RaceVisualizationPanel extends JPanel {
         this.betManager = betManager;
         
         createTrackBackground();
+    }
+
+    /**
+     * Creates a subscriber that applies race events on the EDT. It only asks for the next
+     * event once the previous one has been handled, so a slow EDT pushes back on the race.
+     */
+    public Flow.Subscriber<RaceEvent> createRaceSubscriber() {
+        return new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(RaceEvent event) {
+                SwingUtilities.invokeLater(() -> {
+                    handleRaceEvent(event);
+                    subscription.request(1);
+                });
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                System.err.println("Race event stream failed: " + throwable.getMessage());
+            }
 
-        animationTimer = new Timer(ANIMATION_DELAY, e -> {
-            updatePositions();
-            updateAnimationFrames();
-            repaint();
-        });
+            @Override
+            public void onComplete() {
+            }
+        };
     }
 
     private void createTrackBackground() {
@@ -99,6 +133,8 @@ public class RaceVisualizationPanel extends JPanel {
         horsePositions.clear();
         horseFrames.clear();
         currentFrameIndices.clear();
+        liveQuote = null;
+        frame = new RaceFrame(currentRace.getLanes().length);
         
         Horse[] horses = currentRace.getLanes();
         int laneHeight = (TRACK_HEIGHT - (2 * VERTICAL_SPACING)) / Math.max(1, horses.length);
@@ -148,8 +184,15 @@ public class RaceVisualizationPanel extends JPanel {
         g2d.drawLine(finishX, VERTICAL_SPACING - 10, finishX, TRACK_HEIGHT - VERTICAL_SPACING + 10);
         
         int horseSize = calculateHorseSize();
-        for (Horse horse : horsePositions.keySet()) {
-            Point pos = horsePositions.get(horse);
+        currentRace.getFrames().read(frame);
+        Horse[] horses = currentRace.getLanes();
+        for (int lane = 0; lane < horses.length; lane++) {
+            Horse horse = horses[lane];
+            Point start = horsePositions.get(horse);
+            if (start == null) continue;
+            int x = laneX(frame.getDistance(lane), track.getLength());
+            int y = start.y;
+            boolean fallen = frame.hasFallen(lane);
             List<BufferedImage> frames = horseFrames.get(horse);
             int currentFrame = currentFrameIndices.get(horse);
             
@@ -157,56 +200,54 @@ public class RaceVisualizationPanel extends JPanel {
                 BufferedImage currentSprite = frames.get(currentFrame);
                 
                 AffineTransform transform = new AffineTransform();
-                transform.translate(pos.x + horseSize, pos.y); // Move to position + width
+                transform.translate(x + horseSize, y); // Move to position + width
                 transform.scale(-1, 1); // Mirror horizontally
                 
-                if (horse.hasFallen()) {
+                if (fallen) {
                     transform.rotate(Math.PI, horseSize / 2.0, horseSize / 2.0);
                 }
                 
                 g2d.drawImage(currentSprite, transform, null);
                 
                 g2d.setFont(nameFont);
-                if (horse.hasFallen()) {
+                if (fallen) {
                     g2d.setColor(Color.RED);
-                    g2d.drawString(horse.getName(), pos.x + horseSize + 5, pos.y + horseSize/2);
+                    g2d.drawString(horse.getName(), x + horseSize + 5, y + horseSize/2);
                 } else {
+                    String label = horse.getName();
+                    if (liveQuote != null && lane < liveQuote.getLaneCount()) {
+                        label += "  " + BettingOdds.formatOdds(liveQuote.getOdds(lane));
+                    }
                     g2d.setColor(Color.WHITE);
-                    g2d.drawString(horse.getName(), pos.x + horseSize + 6, pos.y + horseSize/2 + 1);
+                    g2d.drawString(label, x + horseSize + 6, y + horseSize/2 + 1);
                     g2d.setColor(Color.BLACK);
-                    g2d.drawString(horse.getName(), pos.x + horseSize + 5, pos.y + horseSize/2);
+                    g2d.drawString(label, x + horseSize + 5, y + horseSize/2);
                 }
             }
         }
     }
 
-    private void updatePositions() {
-        if (currentRace == null) return;
-        
-        Horse[] horses = currentRace.getLanes();
-        Track track = currentRace.getTrack();
-        boolean allFinished = true;
-        int horseSize = calculateHorseSize();
-        
-        for (Horse horse : horses) {
-            if (horse != null) {
-                Point pos = horsePositions.get(horse);
-                if (pos != null) {
-                    int maxX = getWidth() - horseSize - START_X;
-                    int progress = horse.getDistanceTravelled();
-                    int newX = START_X + (int)((double)progress / track.getLength() * maxX);
-                    
-                    if (progress < track.getLength()) {
-                        pos.x = newX;
-                        allFinished = false;
-                    }
-                }
+    private void handleRaceEvent(RaceEvent event) {
+        if (event.getRace() != currentRace) return;
+
+        // Positions come from the race's latest frame at paint time; events only say when to repaint
+        switch (event.getType()) {
+            case FELL -> repaint();
+            case TICK -> {
+                updateAnimationFrames();
+                repaint();
+            }
+            default -> {
             }
         }
-        
-        if (allFinished) {
-            animationTimer.stop();
-        }
+    }
+
+    private int laneX(int distance, int trackLength) {
+        // A horse that has crossed the line is drawn at its last stride, as before
+        int shown = Math.min(distance, trackLength - 1);
+        if (shown <= 0) return START_X;
+        int maxX = getWidth() - calculateHorseSize() - START_X;
+        return START_X + (int)((double)shown / trackLength * maxX);
     }
 
     public void showRaceResults(Race race) {
@@ -276,6 +317,14 @@ public class RaceVisualizationPanel extends JPanel {
             JOptionPane.INFORMATION_MESSAGE);
     }
 
+    /**
+     * Shows the latest in-running prices next to the horses' names. Call on the EDT.
+     */
+    public void setLiveQuote(LiveOddsPricer.Quote quote) {
+        this.liveQuote = quote;
+        repaint();
+    }
+
     public void setRace(Race race) {
         this.currentRace = race;
         initializeHorses();
@@ -283,11 +332,7 @@ public class RaceVisualizationPanel extends JPanel {
 
     public void startRace() {
         initializeHorses();
-        animationTimer.start();
-    }
-
-    public void stopRace() {
-        animationTimer.stop();
+        repaint();
     }
 
     @Override
@@ -6,6 +6,7 @@ import java.awt.*;
 import java.util.Map;
 import java.util.List;
 import javax.swing.table.DefaultTableModel;
+import utils.DataRepository;
 import utils.HorseComparator;
 
 import static ui.Button.createStyledButton;
@@ -154,7 +155,7 @@ public class StatisticsPanel extends JPanel {
     }
     
     private void refreshData() {
-        Horse[] horses = utils.FileIO.ingestHorses();
+        Horse[] horses = DataRepository.getInstance().getHorses();
         horseSelector.removeAllItems();
         for (Horse horse : horses) {
             horseSelector.addItem(horse.getName());
@@ -210,7 +211,7 @@ public class StatisticsPanel extends JPanel {
         
         model.setRowCount(0);
         
-        List<Track> tracks = utils.FileIO.loadTracks();
+        List<Track> tracks = DataRepository.getInstance().getTracks();
         for (Track track : tracks) {
             model.addRow(new Object[]{
                 track.getName(),
@@ -256,7 +257,7 @@ public class StatisticsPanel extends JPanel {
     }
     
     private void showHorseComparisonDialog() {
-        Horse[] horses = utils.FileIO.ingestHorses();
+        Horse[] horses = DataRepository.getInstance().getHorses();
         if (horses.length < 2) {
             JOptionPane.showMessageDialog(this,
                 "There must be at least two horses to compare",
@@ -1,7 +1,7 @@
 package ui;
 
 import models.Track;
-import utils.FileIO;
+import utils.DataRepository;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
@@ -63,7 +63,7 @@ public class TrackManagementPanel extends JPanel {
     }
     
     private void loadTracks() {
-        tracks = FileIO.loadTracks();
+        tracks = DataRepository.getInstance().getTracks();
         updateTable();
     }
     
@@ -112,7 +112,7 @@ public class TrackManagementPanel extends JPanel {
                 Track.TrackCondition.DRY
             );
             tracks.add(newTrack);
-            FileIO.saveTracks(tracks);
+            DataRepository.getInstance().setTracks(tracks);
             updateTable();
             dialog.dispose();
         });
@@ -128,7 +128,7 @@ public class TrackManagementPanel extends JPanel {
         int selectedRow = trackTable.getSelectedRow();
         if (selectedRow >= 0) {
             tracks.remove(selectedRow);
-            FileIO.saveTracks(tracks);
+            DataRepository.getInstance().setTracks(tracks);
             updateTable();
         }
     }
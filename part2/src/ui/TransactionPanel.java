@@ -9,7 +9,7 @@ import java.util.List;
 import java.util.ArrayList;
 
 import models.Transaction;
-import utils.FileIO;
+import utils.DataRepository;
 
 import static ui.Button.createStyledButton;
 
@@ -134,23 +134,10 @@ public class TransactionPanel extends JPanel {
         tableModel.setRowCount(0);
         currentBalance = 0.0;
         
-        List<Transaction> loadedTransactions = FileIO.loadTransactions();
-        if (loadedTransactions == null) {
-            JOptionPane.showMessageDialog(this,
-                "Error loading transaction data",
-                "File Error",
-                JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-        
-        transactions = loadedTransactions;
+        transactions = DataRepository.getInstance().getTransactions();
         for (Transaction transaction : transactions) {
             tableModel.addRow(transaction.toTableRow());
-            if (transaction.getType() == Transaction.TransactionType.DEPOSIT) {
-                currentBalance += transaction.getAmount();
-            } else {
-                currentBalance -= transaction.getAmount();
-            }
+            currentBalance += transaction.getBalanceChange();
         }
         
         updateBalanceLabel();
@@ -164,12 +151,8 @@ public class TransactionPanel extends JPanel {
         currentBalance += amount;
         updateBalanceLabel();
         
-        if (!FileIO.saveTransactions(transactions)) {
-            JOptionPane.showMessageDialog(this,
-                "Error saving transaction data",
-                "File Error",
-                JOptionPane.ERROR_MESSAGE);
-        }
+        // Written to disk in the background
+        DataRepository.getInstance().addTransaction(transaction);
     }
 
     private void updateBalanceLabel() {
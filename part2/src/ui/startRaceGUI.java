@@ -4,6 +4,7 @@ import javax.swing.*;
 import java.awt.*;
 
 import models.BetManager;
+import utils.DataRepository;
 
 public class startRaceGUI extends JFrame {
     
@@ -39,6 +40,8 @@ public class startRaceGUI extends JFrame {
     }
     
     public static void main(String[] args) {
+        // Load the data files here rather than on the EDT when the first screen asks for them
+        DataRepository.getInstance();
         startRaceGUI frame = new startRaceGUI();
         frame.setVisible(true);
     }
@@ -0,0 +1,184 @@
+package utils;
+
+import models.Horse;
+import models.ModelParameters;
+import models.Race;
+import models.Track;
+
+import java.util.SplittableRandom;
+
+/**
+ * Compares single-threaded throughput of the race loop as it was before RaceKernel (Horse
+ * objects and track modifiers worked out on every move) against today's Race loop and the
+ * compiled engines on the shipped Oval card. BATCH is timed with its scalar loops and, if
+ * VectorRaceSimulator is loaded, with the Vector API ones too, which must give exactly the
+ * same result. Each row also prints the favourite's win rate as a sanity check.
+ */
+public class BatchRaceBenchmark {
+    private static final int RUNS = 400_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : RUNS;
+
+        Track track = new Track("Oval", 4, 20, Track.TrackShape.OVAL, Track.TrackCondition.DRY);
+        Horse[] lineup = {
+            new Horse('A', "Thunder", 0.48, "", ""),
+            new Horse('B', "Lightning", 0.85, "", ""),
+            new Horse('C', "Tornado", 0.84, "", ""),
+            new Horse('D', "Blizzard", 0.52, "", "")
+        };
+
+        boolean vectorMatches = true;
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("Round " + round + " (" + runs + " races, 1 thread)");
+            double baseline = timeOldRaceLoop(track, lineup, runs);
+            timeRaceLoop(track, lineup, runs, baseline);
+            for (MonteCarloSimulator.Engine engine : MonteCarloSimulator.Engine.values()) {
+                if (engine != MonteCarloSimulator.Engine.BATCH) {
+                    timeEngine(track, lineup, runs, engine, baseline);
+                }
+            }
+            SimulationResult scalar = timeBatch(track, lineup, runs, false, baseline);
+            if (BatchRaceSimulator.isVectorAvailable()) {
+                SimulationResult vector = timeBatch(track, lineup, runs, true, baseline);
+                vectorMatches &= sameResult(scalar, vector);
+            }
+            System.out.println();
+        }
+
+        if (BatchRaceSimulator.isVectorAvailable()) {
+            System.out.println("Vector batch matches scalar batch: " + vectorMatches + " (Expected: true)");
+        } else {
+            System.out.println("Vector batch not loaded; build part2/vector with --add-modules jdk.incubator.vector");
+        }
+    }
+
+    // Race.simulate() as it was before RaceKernel, on the same random draws
+    private static double timeOldRaceLoop(Track track, Horse[] lineup, int runs) {
+        Horse[] horses = new Horse[lineup.length];
+        for (int lane = 0; lane < lineup.length; lane++) {
+            horses[lane] = new Horse(lineup[lane]);
+        }
+        double fallProbability = ModelParameters.DEFAULT.getFallProbability();
+
+        long wins = 0;
+        long start = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            SplittableRandom random = new SplittableRandom(run);
+            for (Horse horse : horses) {
+                horse.goBackToStart();
+            }
+            Horse winner = null;
+            int tickCount = 0;
+            boolean raceComplete = false;
+            while (!raceComplete && tickCount < Race.MAX_SIMULATED_TICKS) {
+                tickCount++;
+                raceComplete = true;
+                for (Horse horse : horses) {
+                    if (horse.getDistanceTravelled() < track.getLength() && !horse.hasFallen()) {
+                        moveHorse(track, horse, random, fallProbability);
+                        if (winner == null && horse.getDistanceTravelled() >= track.getLength()) {
+                            winner = horse;
+                        }
+                    }
+                }
+                for (Horse horse : horses) {
+                    if (horse.getDistanceTravelled() < track.getLength() && !horse.hasFallen()) {
+                        raceComplete = false;
+                    }
+                }
+            }
+            if (winner == horses[1]) {
+                wins++;
+            }
+        }
+        double racesPerSecond = runs / ((System.nanoTime() - start) / 1e9);
+        print("Old Race", racesPerSecond, racesPerSecond, (double) wins / runs);
+        return racesPerSecond;
+    }
+
+    private static void moveHorse(Track track, Horse horse, SplittableRandom random, double fallProbability) {
+        double speedModifier = track.getSpeedModifier();
+        double fallRiskModifier = track.getFallRiskModifier();
+        double shapeAdjustment = track.getShapeSpeedAdjustment(horse.getDistanceTravelled());
+        double equipmentSpeedMod = horse.calculateTotalSpeedModifier();
+        double equipmentEnduranceMod = horse.calculateTotalEnduranceModifier();
+        double equipmentConfidenceMod = horse.calculateTotalConfidenceModifier();
+
+        double effectiveConfidence = Math.min(1.0, horse.getConfidence() * equipmentConfidenceMod);
+        double moveChance = effectiveConfidence * speedModifier * shapeAdjustment * equipmentSpeedMod;
+        double raceProgress = (double) horse.getDistanceTravelled() / track.getLength();
+        moveChance *= 1.0 - (raceProgress * (1.0 - equipmentEnduranceMod));
+
+        if (random.nextDouble() < moveChance) {
+            horse.moveForward();
+        }
+        if (horse.getDistanceTravelled() >= track.getLength()) {
+            return;
+        }
+        double fallChance = (fallProbability * effectiveConfidence * effectiveConfidence + fallRiskModifier)
+                / equipmentConfidenceMod;
+        if (random.nextDouble() < fallChance) {
+            horse.fall();
+        }
+    }
+
+    private static void timeRaceLoop(Track track, Horse[] lineup, int runs, double baseline) {
+        Horse[] horses = new Horse[lineup.length];
+        for (int lane = 0; lane < lineup.length; lane++) {
+            horses[lane] = new Horse(lineup[lane]);
+        }
+
+        long wins = 0;
+        long start = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            Race race = new Race(track, run);
+            for (int lane = 0; lane < horses.length; lane++) {
+                race.addHorse(horses[lane], lane + 1);
+            }
+            race.simulate();
+            if (!race.getFinishOrder().isEmpty() && race.getFinishOrder().get(0) == horses[1]) {
+                wins++;
+            }
+        }
+        double racesPerSecond = runs / ((System.nanoTime() - start) / 1e9);
+        print("Race loop", racesPerSecond, baseline, (double) wins / runs);
+    }
+
+    private static void timeEngine(Track track, Horse[] lineup, int runs,
+                                   MonteCarloSimulator.Engine engine, double baseline) {
+        long start = System.nanoTime();
+        // A single chunk keeps the comparison on one thread
+        SimulationResult result = MonteCarloSimulator.simulateSequential(track, lineup, runs, 42L, engine);
+        double racesPerSecond = runs / ((System.nanoTime() - start) / 1e9);
+        print(engine.toString(), racesPerSecond, baseline, result.getWinProbability(1));
+    }
+
+    private static SimulationResult timeBatch(Track track, Horse[] lineup, int runs, boolean vector,
+                                              double baseline) {
+        long start = System.nanoTime();
+        SimulationResult result = BatchRaceSimulator.create(track, lineup, ModelParameters.DEFAULT, runs, 42L,
+                vector).simulate(runs, Race.MAX_SIMULATED_TICKS);
+        double racesPerSecond = runs / ((System.nanoTime() - start) / 1e9);
+        print(vector ? "BATCH simd" : "BATCH", racesPerSecond, baseline, result.getWinProbability(1));
+        return result;
+    }
+
+    private static boolean sameResult(SimulationResult a, SimulationResult b) {
+        for (int lane = 0; lane < a.getLaneCount(); lane++) {
+            if (a.getWinProbability(lane) != b.getWinProbability(lane)
+                    || a.getPlaceProbability(lane) != b.getPlaceProbability(lane)
+                    || a.getFallRate(lane) != b.getFallRate(lane)
+                    || a.getExpectedPosition(lane) != b.getExpectedPosition(lane)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void print(String name, double racesPerSecond, double baseline, double favouriteWins) {
+        System.out.printf("  %-10s %,12.0f races/s  x%5.2f  (lane 2 wins %.4f)%n",
+                name, racesPerSecond, racesPerSecond / baseline, favouriteWins);
+    }
+}
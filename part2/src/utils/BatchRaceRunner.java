@@ -0,0 +1,279 @@
+package utils;
+
+import models.Horse;
+import models.Race;
+import models.RaceKernel;
+import models.RaceResult;
+import models.Track;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a race card headless on a pool of worker threads, for back-tests on machines
+ * without a display.
+ * <p>
+ * A card is a text file with one line per fixture (blank lines and lines starting with
+ * '#' are skipped):
+ * <pre>
+ *   track,condition,repetitions,horse;horse;...
+ *   Oval,MUDDY,10000,Thunder;Lightning;Tornado
+ * </pre>
+ * Tracks and horses are looked up by name in tracks.csv and horses.csv. Each repetition
+ * is a fresh race from the horses' stored confidence; nothing about the horses is
+ * written back. Results go in races.csv format to the --out file, or to races.csv itself
+ * with --store, and are written in card order whatever the thread count.
+ * <p>
+ * Usage: java -cp ".:src" utils.BatchRaceRunner card.csv [--threads N] [--seed S]
+ * [--out results.csv | --store]
+ */
+public class BatchRaceRunner {
+    private static final int RACES_PER_CHUNK = 1_000;
+
+    /** One line of the card, resolved against the data files. */
+    static class Fixture {
+        final Track track;
+        final Horse[] lineup;
+        final int repetitions;
+
+        Fixture(Track track, Horse[] lineup, int repetitions) {
+            this.track = track;
+            this.lineup = lineup;
+            this.repetitions = repetitions;
+        }
+    }
+
+    private static class ChunkResult {
+        final List<RaceResult> results;
+        final int[] wins;
+        long ticks;
+
+        ChunkResult(int laneCount, boolean keepResults) {
+            this.results = keepResults ? new ArrayList<>() : null;
+            this.wins = new int[laneCount];
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        if (args.length == 0) {
+            System.out.println("Usage: java -cp \".:src\" utils.BatchRaceRunner card.csv "
+                    + "[--threads N] [--seed S] [--out results.csv | --store]");
+            return;
+        }
+
+        String cardFile = args[0];
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = new SplittableRandom().nextLong();
+        String outFile = null;
+        boolean store = false;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--out" -> outFile = Paths.get(args[++i]).toAbsolutePath().toString();
+                case "--store" -> store = true;
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        List<Fixture> card = loadCard(cardFile, FileIO.loadTracks(), FileIO.ingestHorses());
+        System.out.println("Card " + cardFile + ": " + card.size() + " fixtures, "
+                + threads + " threads, seed " + seed);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            run(card, pool, threads * 2, seed, outFile, store);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Reads a card, resolving track and horse names.
+     *
+     * @throws IllegalArgumentException naming the line of the first bad fixture
+     */
+    static List<Fixture> loadCard(String cardFile, List<Track> tracks, Horse[] horses) throws IOException {
+        Map<String, Track> trackByName = new HashMap<>();
+        for (Track track : tracks) {
+            trackByName.put(track.getName(), track);
+        }
+        Map<String, Horse> horseByName = new HashMap<>();
+        for (Horse horse : horses) {
+            horseByName.put(horse.getName(), horse);
+        }
+
+        List<Fixture> card = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(cardFile))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] parts = line.split(",");
+                if (parts.length != 4) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": expected track,condition,repetitions,horses");
+                }
+                Track venue = trackByName.get(parts[0].trim());
+                if (venue == null) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": unknown track " + parts[0].trim());
+                }
+                Track.TrackCondition condition;
+                try {
+                    condition = Track.TrackCondition.valueOf(parts[1].trim().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": unknown condition " + parts[1].trim());
+                }
+                int repetitions;
+                try {
+                    repetitions = Integer.parseInt(parts[2].trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": repetitions must be a number, not "
+                            + parts[2].trim());
+                }
+                if (repetitions < 1) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": repetitions must be at least 1");
+                }
+
+                String[] names = parts[3].split(";");
+                Horse[] lineup = new Horse[names.length];
+                for (int lane = 0; lane < names.length; lane++) {
+                    lineup[lane] = horseByName.get(names[lane].trim());
+                    if (lineup[lane] == null) {
+                        throw new IllegalArgumentException("Line " + lineNumber + ": unknown horse " + names[lane].trim());
+                    }
+                }
+
+                Track track = new Track(venue.getName(), lineup.length, venue.getLength(), venue.getShape(), condition);
+                card.add(new Fixture(track, lineup, repetitions));
+            }
+        }
+        return card;
+    }
+
+    /**
+     * Runs the card in chunks of RACES_PER_CHUNK, keeping at most window chunks in
+     * flight so memory stays flat however many repetitions are asked for.
+     */
+    static void run(List<Fixture> card, ExecutorService pool, int window, long seed,
+                    String outFile, boolean store) throws InterruptedException, ExecutionException {
+        boolean keepResults = outFile != null || store;
+        SplittableRandom root = new SplittableRandom(seed);
+        long totalRaces = 0;
+        long totalTicks = 0;
+        long start = System.nanoTime();
+        if (keepResults) {
+            RaceStatsAppender.forFile(outFile != null ? outFile : FileIO.RACES_CSV_FILE).setReportThroughput(true);
+        }
+
+        for (Fixture fixture : card) {
+            int[] wins = new int[fixture.lineup.length];
+            Deque<Future<ChunkResult>> inFlight = new ArrayDeque<>();
+
+            for (int done = 0; done < fixture.repetitions; done += RACES_PER_CHUNK) {
+                int races = Math.min(RACES_PER_CHUNK, fixture.repetitions - done);
+                SplittableRandom random = root.split();
+                inFlight.add(pool.submit(() -> runChunk(fixture, races, random, keepResults)));
+                if (inFlight.size() >= window) {
+                    totalTicks += collect(inFlight.poll().get(), wins, outFile, store);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                totalTicks += collect(inFlight.poll().get(), wins, outFile, store);
+            }
+            totalRaces += fixture.repetitions;
+
+            printFixture(fixture, wins);
+        }
+        if (keepResults && !FileIO.flushRaceStats()) {
+            System.err.println("Some race results could not be written; see the errors above");
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%nRan %,d races (%,d ticks) in %.2f s: %,.0f races/s, %,.0f ticks/s%n",
+                totalRaces, totalTicks, seconds, totalRaces / seconds, totalTicks / seconds);
+    }
+
+    private static ChunkResult runChunk(Fixture fixture, int races, SplittableRandom random, boolean keepResults) {
+        Horse[] lineup = fixture.lineup;
+        RaceKernel kernel = RaceKernel.compile(fixture.track, lineup);
+        int[] order = new int[lineup.length];
+        ChunkResult chunk = new ChunkResult(lineup.length, keepResults);
+        // Race IDs get their own stream, so writing results doesn't change the races
+        SplittableRandom ids = random.split();
+
+        for (int race = 0; race < races; race++) {
+            kernel.reset();
+            kernel.run(random, Race.MAX_SIMULATED_TICKS);
+            chunk.ticks += kernel.getTick();
+            if (kernel.getFinishedCount() > 0) {
+                chunk.wins[kernel.getFinisher(0)]++;
+            }
+
+            if (keepResults) {
+                kernel.fillResultOrder(order);
+                List<RaceResult.Entry> entries = new ArrayList<>(lineup.length);
+                for (int i = 0; i < order.length; i++) {
+                    int lane = order[i];
+                    Horse horse = lineup[lane];
+                    long finishTime = kernel.hasFinished(lane) ? kernel.getFinishTick(lane) * Race.TICK_MILLIS : -1L;
+                    entries.add(new RaceResult.Entry(horse.getName(), horse.getSymbol(), horse.getConfidence(),
+                            Race.adjustedConfidence(horse.getConfidence(), i + 1, kernel.hasFallen(lane)),
+                            kernel.getDistance(lane), i + 1, finishTime));
+                }
+
+                String winnerName = null;
+                long winnerTime = 0;
+                if (kernel.getFinishedCount() > 0) {
+                    int winner = kernel.getFinisher(0);
+                    winnerName = lineup[winner].getName();
+                    winnerTime = kernel.getFinishTick(winner) * Race.TICK_MILLIS;
+                }
+                String raceID = new UUID(ids.nextLong(), ids.nextLong()).toString();
+                chunk.results.add(new RaceResult(raceID, fixture.track.getName(), fixture.track.getCondition(),
+                        entries, winnerName, winnerTime));
+            }
+        }
+        return chunk;
+    }
+
+    private static long collect(ChunkResult chunk, int[] wins, String outFile, boolean store) {
+        for (int lane = 0; lane < wins.length; lane++) {
+            wins[lane] += chunk.wins[lane];
+        }
+        if (outFile != null) {
+            FileIO.storeRaceStats(chunk.results, outFile);
+        } else if (store) {
+            FileIO.storeRaceStats(chunk.results);
+        }
+        return chunk.ticks;
+    }
+
+    private static void printFixture(Fixture fixture, int[] wins) {
+        Track track = fixture.track;
+        System.out.printf("%n%s (%s, %s), %,d races%n", track.getName(), track.getShape(), track.getCondition(),
+                fixture.repetitions);
+        for (int lane = 0; lane < fixture.lineup.length; lane++) {
+            System.out.printf("  %-16s wins %6.2f%%%n", fixture.lineup[lane].getName(),
+                    100.0 * wins[lane] / fixture.repetitions);
+        }
+    }
+}
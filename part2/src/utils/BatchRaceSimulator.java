@@ -0,0 +1,310 @@
+package utils;
+
+import models.Horse;
+import models.ModelParameters;
+import models.RaceKernel;
+import models.Track;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Steps a block of independent races of the same card together, one array slot per
+ * (lane, race). Slots are stored lane by lane, so the races of one lane sit next to each
+ * other and share that lane's probability table.
+ * <p>
+ * Each tick first draws the random numbers for the whole block: slot i takes the SplitMix64
+ * output for counter i, split into a 31-bit move draw and a 31-bit fall draw. It then
+ * compares them against precomputed integer limits and updates distances, finish ticks,
+ * fall flags and per-race running counts with mask arithmetic instead of per-lane branches.
+ * Finished and fallen slots keep being stepped with their masks cleared. As soon as every
+ * lane of a race is done, the race is tallied and its slots are restarted with the next
+ * race, so the block does not idle waiting for its slowest race.
+ * <p>
+ * These loops are the scalar version. When VectorRaceSimulator (in part2/vector, built
+ * with --add-modules jdk.incubator.vector) is on the class path and the module is loaded,
+ * it replaces fillDraws and advance with jdk.incubator.vector code that gives exactly the
+ * same results.
+ */
+class BatchRaceSimulator {
+    static final int BATCH_SIZE = 256;
+    static final long GAMMA = 0x9E3779B97F4A7C15L;
+    static final long MIX1 = 0xBF58476D1CE4E5B9L;
+    static final long MIX2 = 0x94D049BB133111EBL;
+
+    private static final String VECTOR_CLASS = "utils.VectorRaceSimulator";
+    // Checked once: null if the Vector API version can't be loaded
+    private static final Class<?> vectorClass = loadVectorClass();
+
+    final int laneCount;
+    final int length;
+    final int batch;
+    final int stride;
+
+    // A draw moves a lane when it is <= moveLimit[lane * stride + distance], and fells it
+    // when <= fallLimit[lane]. One extra column of -1 per lane, so slots that have crossed
+    // the line never move without clamping their distance.
+    final int[] moveLimit;
+    final int[] fallLimit;
+
+    // Per slot, index lane * batch + race; alive and fallen are 0 or 1
+    final int[] distance;
+    final int[] alive;
+    final int[] fallen;
+    final int[] finishTick;
+    final int[] moveDraws;
+    final int[] fallDraws;
+
+    // Per race: lanes still running and the tick the race started on
+    final int[] running;
+    private final int[] startTick;
+    private final boolean[] retired;
+
+    // SplitMix64 counter; slot i of a tick draws from drawState + (i + 1) * GAMMA
+    long drawState;
+
+    BatchRaceSimulator(RaceKernel tables, int batch, long seed) {
+        this.laneCount = tables.getLaneCount();
+        this.length = Math.max(0, tables.getLength());
+        this.batch = batch;
+        this.stride = length + 1;
+
+        moveLimit = new int[laneCount * stride];
+        fallLimit = new int[laneCount];
+        for (int lane = 0; lane < laneCount; lane++) {
+            for (int d = 0; d < length; d++) {
+                moveLimit[lane * stride + d] = limit(tables.getMoveChance(lane, d));
+            }
+            moveLimit[lane * stride + length] = -1;
+            fallLimit[lane] = limit(tables.getFallChance(lane));
+        }
+
+        int slots = laneCount * batch;
+        distance = new int[slots];
+        alive = new int[slots];
+        fallen = new int[slots];
+        finishTick = new int[slots];
+        moveDraws = new int[slots];
+        fallDraws = new int[slots];
+        running = new int[batch];
+        startTick = new int[batch];
+        retired = new boolean[batch];
+        drawState = seed;
+    }
+
+    /**
+     * Simulates runs races of the lineup, batch by batch, on the calling thread.
+     *
+     * @param random only used for the seed of the block's own draws
+     */
+    static SimulationResult simulateChunk(Track track, Horse[] lineup, ModelParameters parameters,
+                                          int runs, int maxTicks, SplittableRandom random) {
+        return create(track, lineup, parameters, runs, random.nextLong(), vectorClass != null)
+                .simulate(runs, maxTicks);
+    }
+
+    /**
+     * @return true if the Vector API version is loaded and used by default
+     */
+    static boolean isVectorAvailable() {
+        return vectorClass != null;
+    }
+
+    /**
+     * @param vector use the Vector API version if it is available
+     */
+    static BatchRaceSimulator create(Track track, Horse[] lineup, ModelParameters parameters,
+                                     int runs, long seed, boolean vector) {
+        double[] confidences = new double[lineup.length];
+        for (int lane = 0; lane < lineup.length; lane++) {
+            confidences[lane] = lineup[lane].getConfidence();
+        }
+        RaceKernel tables = RaceKernel.compile(track, lineup, confidences, parameters);
+        int batch = Math.max(1, Math.min(BATCH_SIZE, runs));
+        if (vector && vectorClass != null) {
+            try {
+                return (BatchRaceSimulator) vectorClass.getDeclaredConstructor(RaceKernel.class, int.class,
+                        long.class).newInstance(tables, batch, seed);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Falling back to scalar batch simulation: " + e);
+            }
+        }
+        return new BatchRaceSimulator(tables, batch, seed);
+    }
+
+    private static Class<?> loadVectorClass() {
+        try {
+            Class<?> type = Class.forName(VECTOR_CLASS);
+            // Fails here, not mid-simulation, if the module wasn't added
+            Class.forName("jdk.incubator.vector.IntVector");
+            return type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+
+    SimulationResult simulate(int runs, int maxTicks) {
+        SimulationResult result = new SimulationResult(laneCount);
+        int[] order = new int[laneCount];
+        long[] finishKeys = new long[laneCount];
+
+        int started = 0;
+        for (int race = 0; race < batch; race++) {
+            if (started < runs) {
+                startRace(race, 0);
+                started++;
+            } else {
+                retire(race);
+            }
+        }
+
+        int completed = 0;
+        int tick = 0;
+        while (completed < runs) {
+            tick++;
+            fillDraws();
+            advance(tick);
+
+            for (int race = 0; race < batch; race++) {
+                if (retired[race] || (running[race] > 0 && tick - startTick[race] < maxTicks)) {
+                    continue;
+                }
+
+                int finishers = fillResultOrder(race, order, finishKeys);
+                for (int i = 0; i < laneCount; i++) {
+                    int lane = order[i];
+                    result.record(lane, i + 1, i < finishers, fallen[lane * batch + race] == 1);
+                }
+                completed++;
+
+                if (started < runs) {
+                    startRace(race, tick);
+                    started++;
+                } else {
+                    retire(race);
+                }
+            }
+        }
+        return result.withRuns(runs);
+    }
+
+    /**
+     * Draws this tick's move and fall numbers for every slot.
+     */
+    void fillDraws() {
+        long state = drawState;
+        for (int i = 0; i < moveDraws.length; i++) {
+            state += GAMMA;
+            long bits = mix64(state);
+            moveDraws[i] = (int) (bits >>> 33);
+            fallDraws[i] = (int) bits >>> 1;
+        }
+        drawState = state;
+    }
+
+    /**
+     * Steps every slot by one tick with the draws from fillDraws.
+     */
+    void advance(int tick) {
+        for (int lane = 0; lane < laneCount; lane++) {
+            advanceRaces(lane, 0, batch, tick);
+        }
+    }
+
+    /**
+     * Steps races from (inclusive) to to (exclusive) of one lane; also the tail of the
+     * Vector API loop.
+     */
+    final void advanceRaces(int lane, int from, int to, int tick) {
+        int base = lane * batch;
+        int table = lane * stride;
+        int fall = fallLimit[lane];
+        for (int race = from; race < to; race++) {
+            int i = base + race;
+            int live = alive[i];
+            int moved = moveDraws[i] <= moveLimit[table + distance[i]] ? live : 0;
+            int d = distance[i] + moved;
+            int crossed = d >= length ? moved : 0;
+            // A horse that has just crossed the line is safe
+            int fell = fallDraws[i] <= fall ? live & (crossed ^ 1) : 0;
+            int done = crossed | fell;
+
+            distance[i] = d;
+            finishTick[i] += crossed * (tick - finishTick[i]);
+            fallen[i] |= fell;
+            alive[i] = live & (done ^ 1);
+            running[race] -= done;
+        }
+    }
+
+    /**
+     * SplitMix64's output function.
+     */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * MIX1;
+        z = (z ^ (z >>> 27)) * MIX2;
+        return z ^ (z >>> 31);
+    }
+
+    private void startRace(int race, int tick) {
+        for (int lane = 0; lane < laneCount; lane++) {
+            int i = lane * batch + race;
+            distance[i] = 0;
+            alive[i] = length > 0 ? 1 : 0;
+            fallen[i] = 0;
+            finishTick[i] = -1;
+        }
+        // A zero-length track has nothing to run, as in RaceKernel
+        running[race] = length > 0 ? laneCount : 0;
+        startTick[race] = tick;
+    }
+
+    private void retire(int race) {
+        retired[race] = true;
+        running[race] = 0;
+        for (int lane = 0; lane < laneCount; lane++) {
+            alive[lane * batch + race] = 0;
+        }
+    }
+
+    /**
+     * @return the largest 31-bit draw that should count as a hit, -1 for never
+     */
+    private static int limit(double probability) {
+        if (probability <= 0.0) return -1;
+        if (probability >= 1.0) return Integer.MAX_VALUE;
+        return (int) Math.ceil(probability * 0x1p31) - 1;
+    }
+
+    /**
+     * Same placings as RaceKernel.fillResultOrder for one race of the block.
+     *
+     * @return the number of finishers
+     */
+    private int fillResultOrder(int race, int[] out, long[] finishKeys) {
+        int finishers = 0;
+        for (int lane = 0; lane < laneCount; lane++) {
+            int tick = finishTick[lane * batch + race];
+            if (tick >= 0) {
+                finishKeys[finishers++] = (long) tick * laneCount + lane;
+            }
+        }
+        Arrays.sort(finishKeys, 0, finishers);
+        for (int i = 0; i < finishers; i++) {
+            out[i] = (int) (finishKeys[i] % laneCount);
+        }
+
+        int count = finishers;
+        for (int lane = 0; lane < laneCount; lane++) {
+            if (finishTick[lane * batch + race] < 0) {
+                int i = count++;
+                while (i > finishers && distance[out[i - 1] * batch + race] < distance[lane * batch + race]) {
+                    out[i] = out[i - 1];
+                    i--;
+                }
+                out[i] = lane;
+            }
+        }
+        return finishers;
+    }
+}
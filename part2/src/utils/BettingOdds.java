@@ -3,15 +3,69 @@ package utils;
 import models.Horse;
 import models.Track;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Prices a race from its horses' win probabilities. Races small enough for
+ * ExactRaceSolver are solved exactly; bigger ones are simulated in batches until
+ * every horse's 95% confidence interval on its win chance is narrower than
+ * TARGET_HALF_WIDTH either side, so lopsided fields settle in one batch and close ones
+ * get more runs. Prices are cached per track, condition and lineup, so pricing the same
+ * race again is a lookup.
+ */
 public class BettingOdds {
+    private static final int BATCH_RUNS = 4_000;
+    private static final int MAX_RUNS = 200_000;
+    private static final double TARGET_HALF_WIDTH = 0.005;
+    private static final double Z_95 = 1.96;
+    private static final double MIN_ODDS = 1.1;
+    private static final double MAX_ODDS = 100.0;
+
+    private static final Map<String, double[]> cache = new ConcurrentHashMap<>();
 
-    public static double calculateOdds(Horse horse, Track track) {
+    /**
+     * Returns decimal odds for each horse in the lineup, in lineup order, solving or
+     * simulating the race if it has not been priced yet. Simulating can take a moment;
+     * call it off the EDT.
+     */
+    public static double[] calculateOdds(Track track, Horse[] lineup) {
+        String key = lineupKey(track, lineup);
+        double[] cached = cache.get(key);
+        if (cached != null) {
+            return cached.clone();
+        }
 
-        double adjustedOdds = 2.0 + ((1.0 - horse.getConfidence()) * 8.0);
-        adjustedOdds *= (2.0 - track.getSpeedModifier());
-        adjustedOdds *= (1.0 + track.getFallRiskModifier());
+        double[] odds = new double[lineup.length];
+        if (ExactRaceSolver.isTractable(track, lineup, ExactRaceSolver.DEFAULT_MAX_STATES)) {
+            ExactRaceSolver.Solution solution = ExactRaceSolver.solve(track, lineup);
+            for (int lane = 0; lane < lineup.length; lane++) {
+                odds[lane] = toDecimalOdds(solution.getWinProbability(lane));
+            }
+        } else {
+            // Seeded from the key, so the same race is always priced the same way
+            long seed = key.hashCode();
+            SimulationResult result = null;
+            while (result == null || (result.getRuns() < MAX_RUNS && !isSettled(result))) {
+                int have = result == null ? 0 : result.getRuns();
+                SimulationResult batch = MonteCarloSimulator.simulate(track, lineup, BATCH_RUNS, seed + have,
+                        MonteCarloSimulator.Engine.EVENT);
+                result = result == null ? batch : result.merge(batch);
+            }
+            for (int lane = 0; lane < lineup.length; lane++) {
+                odds[lane] = toDecimalOdds(result.getWinProbability(lane));
+            }
+        }
+        cache.put(key, odds);
+        return odds.clone();
+    }
 
-        return Math.max(1.1, adjustedOdds);
+    /**
+     * @return the odds for the lineup if it has already been priced, otherwise null
+     */
+    public static double[] getCachedOdds(Track track, Horse[] lineup) {
+        double[] cached = cache.get(lineupKey(track, lineup));
+        return cached == null ? null : cached.clone();
     }
 
     public static String formatOdds(double decimalOdds) {
@@ -21,4 +75,41 @@ public class BettingOdds {
     public static double calculatePotentialWinnings(double betAmount, double odds) {
         return betAmount * odds;
     }
-} 
\ No newline at end of file
+
+    private static boolean isSettled(SimulationResult result) {
+        int runs = result.getRuns();
+        for (int lane = 0; lane < result.getLaneCount(); lane++) {
+            // Shrunk towards 1/2 so a lane with no wins yet does not look settled after one batch
+            double p = (result.getWinProbability(lane) * runs + 1.0) / (runs + 2.0);
+            if (Z_95 * Math.sqrt(p * (1.0 - p) / runs) > TARGET_HALF_WIDTH) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double toDecimalOdds(double winProbability) {
+        if (winProbability <= 0.0) {
+            return MAX_ODDS;
+        }
+        return Math.max(MIN_ODDS, Math.min(MAX_ODDS, 1.0 / winProbability));
+    }
+
+    /**
+     * Everything the simulation depends on: the track layout and condition, and each
+     * lane's horse, confidence and equipment modifiers in lane order.
+     */
+    private static String lineupKey(Track track, Horse[] lineup) {
+        StringBuilder key = new StringBuilder();
+        key.append(track.getName()).append(',').append(track.getLength())
+                .append(',').append(track.getShape()).append(',').append(track.getCondition());
+        for (Horse horse : lineup) {
+            key.append('|').append(horse.getName()).append('/').append(horse.getSymbol())
+                    .append('/').append(horse.getConfidence())
+                    .append('/').append(horse.calculateTotalSpeedModifier())
+                    .append('/').append(horse.calculateTotalEnduranceModifier())
+                    .append('/').append(horse.calculateTotalConfidenceModifier());
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,371 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a CSV file one record at a time straight from its bytes. Each record is held as
+ * field offsets into the buffer; ints and doubles are parsed where they lie, and a field
+ * becomes a String only when a caller asks for one.
+ * <p>
+ * Fields split the way FileIO always has: on commas outside quotes, where " and ' both
+ * open and close a quote and are kept in the field ("Thunder",'A' reads as "Thunder" and
+ * 'A' with the quotes), and with surrounding spaces trimmed. Every line is a record.
+ * <p>
+ * Files up to POOL_LIMIT are read into a buffer kept per thread and reused by the next
+ * reader on it, and larger ones into a heap array of their own. Only files opened with
+ * openAppendOnly may be memory-mapped instead: a mapping lasts until it is garbage
+ * collected, and a file rewritten in place (horses.csv, tracks.csv) must not be truncated
+ * under one, which fails on Windows and can crash a reader on Linux. Text is expected in
+ * UTF-8, whose multi-byte characters never contain a comma, quote or line break byte.
+ * <pre>
+ * try (CsvReader csv = CsvReader.open(path, true)) {
+ *     while (csv.next()) {
+ *         String name = csv.getString(0);
+ *         int length = csv.getInt(1);
+ *     }
+ * }
+ * </pre>
+ */
+class CsvReader implements AutoCloseable {
+    private static final int POOL_LIMIT = 1 << 20;
+    private static final ThreadLocal<byte[]> POOL = ThreadLocal.withInitial(() -> new byte[8192]);
+    // Exact powers of ten, so in-place parsing rounds the same as Double.parseDouble
+    private static final double[] POWERS_OF_TEN = new double[23];
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    static {
+        POWERS_OF_TEN[0] = 1.0;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    // Set while this reader has the thread's pooled array, so it can be given back
+    private final byte[] pooled;
+
+    private int position;
+    private int fieldCount;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private byte[] scratch;
+
+    private CsvReader(ByteBuffer buffer, int limit, byte[] pooled) {
+        this.buffer = buffer;
+        this.limit = limit;
+        this.pooled = pooled;
+    }
+
+    /**
+     * Opens a file for reading, copying it into memory. A file that can't be read is
+     * reported and read as empty.
+     *
+     * @param skipHeader true to skip the first line
+     */
+    static CsvReader open(String filePath, boolean skipHeader) {
+        return open(filePath, skipHeader, false);
+    }
+
+    /**
+     * Same as open, but a file over POOL_LIMIT is memory-mapped rather than copied. Only
+     * for files that are never rewritten in place, only appended to, such as races.csv.
+     */
+    static CsvReader openAppendOnly(String filePath, boolean skipHeader) {
+        return open(filePath, skipHeader, true);
+    }
+
+    private static CsvReader open(String filePath, boolean skipHeader, boolean mayMap) {
+        CsvReader reader;
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            // Largest array the JVM will allocate
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("file is larger than 2 GB");
+            }
+            if (size > POOL_LIMIT && mayMap) {
+                reader = new CsvReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), (int) size, null);
+            } else {
+                byte[] array = null;
+                if (size <= POOL_LIMIT) {
+                    array = POOL.get();
+                    // Null while an outer reader on this thread holds it
+                    POOL.set(null);
+                }
+                if (array == null || array.length < size) {
+                    array = new byte[(int) Math.max(size, 8192)];
+                }
+                ByteBuffer wrapped = ByteBuffer.wrap(array);
+                wrapped.limit((int) size);
+                while (wrapped.hasRemaining() && channel.read(wrapped) >= 0) {
+                    // Keep reading until the whole file is in
+                }
+                // Big one-off arrays aren't kept, so the pool stays at most POOL_LIMIT
+                reader = new CsvReader(ByteBuffer.wrap(array), wrapped.position(),
+                        array.length <= POOL_LIMIT ? array : null);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading file " + filePath + ": " + e.getMessage());
+            return new CsvReader(ByteBuffer.allocate(0), 0, null);
+        }
+
+        if (skipHeader) {
+            reader.next();
+        }
+        return reader;
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return false once there are no more
+     */
+    boolean next() {
+        if (position >= limit) {
+            fieldCount = 0;
+            return false;
+        }
+
+        fieldCount = 0;
+        int fieldStart = position;
+        boolean inQuotes = false;
+        int i = position;
+        while (i < limit) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            if (b == '"' || b == '\'') {
+                inQuotes = !inQuotes;
+            } else if (b == ',' && !inQuotes) {
+                addField(fieldStart, i);
+                fieldStart = i + 1;
+            }
+            i++;
+        }
+        addField(fieldStart, i);
+
+        // Lines end with \n, \r or \r\n, as for BufferedReader.readLine
+        if (i < limit && buffer.get(i) == '\r') {
+            i++;
+            if (i < limit && buffer.get(i) == '\n') {
+                i++;
+            }
+        } else if (i < limit) {
+            i++;
+        }
+        position = i;
+        return true;
+    }
+
+    private void addField(int start, int end) {
+        // Trim as String.trim() does
+        while (start < end && (buffer.get(start) & 0xFF) <= ' ') start++;
+        while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') end--;
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        fieldCount++;
+    }
+
+    /**
+     * @return the current record's number of fields
+     */
+    int getFieldCount() {
+        return fieldCount;
+    }
+
+    boolean isEmpty(int field) {
+        return start(field) == ends[field];
+    }
+
+    // Fields past the end of the record fail as they would on the old String[] rows
+    private int start(int field) {
+        if (field < 0 || field >= fieldCount) {
+            throw new ArrayIndexOutOfBoundsException("Index " + field + " out of bounds for length " + fieldCount);
+        }
+        return starts[field];
+    }
+
+    /**
+     * @return the field as text, quotes included
+     */
+    String getString(int field) {
+        int start = start(field);
+        int length = ends[field] - start;
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), start, length, StandardCharsets.UTF_8);
+        }
+        if (scratch == null || scratch.length < length) {
+            scratch = new byte[Math.max(length, 64)];
+        }
+        buffer.get(start, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the field as text with every " removed, as names are read from horses.csv
+     */
+    String getUnquoted(int field) {
+        for (int i = start(field); i < ends[field]; i++) {
+            if (buffer.get(i) == '"') {
+                return getString(field).replace("\"", "");
+            }
+        }
+        return getString(field);
+    }
+
+    /**
+     * @return getString(field).charAt(index), without the String when the field is ASCII
+     */
+    char getChar(int field, int index) {
+        int start = start(field);
+        if (index < 0 || start + index >= ends[field]) {
+            return getString(field).charAt(index);
+        }
+        for (int i = start; i <= start + index; i++) {
+            if (buffer.get(i) < 0) {
+                // A multi-byte character moves the index
+                return getString(field).charAt(index);
+            }
+        }
+        return (char) buffer.get(start + index);
+    }
+
+    /**
+     * @return true if the field is exactly this text, compared without making a String
+     */
+    boolean fieldEquals(int field, String text) {
+        int start = start(field);
+        int length = ends[field] - start;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                // Byte and char offsets differ; let String compare
+                return getString(field).equals(text);
+            }
+        }
+        if (length != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(start + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @throws NumberFormatException as Integer.parseInt would
+     */
+    int getInt(int field) {
+        long value = getLong(field);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+        }
+        return (int) value;
+    }
+
+    /**
+     * @throws NumberFormatException as Long.parseLong would
+     */
+    long getLong(int field) {
+        int i = start(field);
+        int end = ends[field];
+        boolean negative = i < end && buffer.get(i) == '-';
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) i++;
+        // More than 18 digits might overflow; leave those to Long.parseLong
+        if (i == end || end - i > 18) {
+            return Long.parseLong(getString(field));
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.parseLong(getString(field));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses plain decimals like 0.85 or -12.5 in place; anything else (exponents, very
+     * long numbers, NaN) goes through Double.parseDouble, with the same result either way.
+     *
+     * @throws NumberFormatException as Double.parseDouble would
+     */
+    double getDouble(int field) {
+        int i = start(field);
+        int end = ends[field];
+        boolean negative = i < end && buffer.get(i) == '-';
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) i++;
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9 || mantissa >= MAX_EXACT_MANTISSA / 10) {
+                return Double.parseDouble(getString(field));
+            }
+            mantissa = mantissa * 10 + digit;
+            digits++;
+            if (scale >= 0) scale++;
+        }
+        if (digits == 0 || scale >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(getString(field));
+        }
+        // Both exact, so one division rounds correctly
+        double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -value : value;
+    }
+
+    /**
+     * @return true if the field is "true", ignoring case, as Boolean.parseBoolean
+     */
+    boolean getBoolean(int field) {
+        int start = start(field);
+        if (ends[field] - start != 4) {
+            return false;
+        }
+        return (buffer.get(start) | 0x20) == 't' && (buffer.get(start + 1) | 0x20) == 'r'
+                && (buffer.get(start + 2) | 0x20) == 'u' && (buffer.get(start + 3) | 0x20) == 'e';
+    }
+
+    /**
+     * @return every field of the current record as text, as the old String[] rows were
+     */
+    String[] getFields() {
+        String[] fields = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            fields[i] = getString(i);
+        }
+        return fields;
+    }
+
+    /**
+     * Gives a pooled buffer back to the thread. A mapped file has nothing to release here;
+     * its mapping lasts until the buffer is garbage collected.
+     */
+    @Override
+    public void close() {
+        if (pooled != null) {
+            POOL.set(pooled);
+        }
+    }
+}
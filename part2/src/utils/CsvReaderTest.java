@@ -0,0 +1,196 @@
+package utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Checks CsvReader against the String[] rows FileIO used to build with BufferedReader and
+ * parseCSVLine: same records, same fields, and the same numbers from in-place parsing as
+ * from Integer/Long/Double.parseDouble. Also times loading a large horse roster both ways.
+ */
+public class CsvReaderTest {
+    private static final int ROSTER_ROWS = 500_000;
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("csv-reader");
+        boolean allPassed = true;
+
+        System.out.println("Test 1: quoting, trimming and line endings");
+        allPassed &= compare(dir, "name,symbol\n\"Thunder\",'A',0.48\n\"Storm, Jr\", 'E' ,0.9\n");
+        allPassed &= compare(dir, "a,b\r\n  spaced  ,\t tabbed\t\r\nlast,row");
+        allPassed &= compare(dir, "a\rb\r\rc,,\n\n,\n");
+        allPassed &= compare(dir, "header only\n");
+        allPassed &= compare(dir, "");
+        allPassed &= compare(dir, "h\n\"unclosed, quote\nnext,line\n'It''s',\"x\"\"y\"\n");
+        allPassed &= compare(dir, "h\n\"Éclair\",'é',0.5\n\"Ümit\",'★',0.25\n");
+
+        System.out.println("Test 2: numbers");
+        String[] numbers = {"0", "-0", "+5", "42", "-12", "9223372036854775807", "99999999999999999999",
+                "0.85", "-12.5", ".5", "5.", "1e3", "0.1234567890123456789", "NaN", "-", ".", "", "1.2.3",
+                "0.000000000000000000000000123", "123456789012345678", "2147483648", " 7 ", "0x10", "1_000"};
+        for (String number : numbers) {
+            allPassed &= compareNumber(dir, number);
+        }
+
+        System.out.println("Test 3: random rows");
+        SplittableRandom random = new SplittableRandom(1L);
+        String alphabet = "ab,,\"'' \t.-0123456789Ée\r\n";
+        for (int file = 0; file < 200; file++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(200);
+            for (int i = 0; i < length; i++) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            allPassed &= compare(dir, text.toString(), false);
+        }
+        System.out.println("  200 random files -> " + (allPassed ? "PASS" : "FAIL"));
+
+        System.out.println("Test 4: large roster");
+        allPassed &= timeRoster(dir);
+
+        System.out.println();
+        System.out.println("CsvReader matches parseCSVLine: " + allPassed + " (Expected: true)");
+    }
+
+    private static boolean compare(Path dir, String text) throws IOException {
+        return compare(dir, text, true);
+    }
+
+    private static boolean compare(Path dir, String text, boolean print) throws IOException {
+        Path file = dir.resolve("test.csv");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+
+        List<String[]> expected = oldRows(new BufferedReader(new StringReader(text)));
+        List<String[]> actual = new ArrayList<>();
+        try (CsvReader csv = CsvReader.open(file.toString(), false)) {
+            while (csv.next()) {
+                actual.add(csv.getFields());
+            }
+        }
+
+        boolean passed = expected.size() == actual.size();
+        for (int i = 0; passed && i < expected.size(); i++) {
+            passed = Arrays.equals(expected.get(i), actual.get(i));
+        }
+        if (print || !passed) {
+            System.out.printf("  %-40s %d rows -> %s%n", text.replace("\n", "\\n").replace("\r", "\\r")
+                    .replace("\t", "\\t"), expected.size(), passed ? "PASS" : "FAIL " + describe(actual));
+        }
+        return passed;
+    }
+
+    private static boolean compareNumber(Path dir, String number) throws IOException {
+        Path file = dir.resolve("number.csv");
+        Files.write(file, ("x," + number + "\n").getBytes(StandardCharsets.UTF_8));
+        String field = number.trim();
+
+        try (CsvReader csv = CsvReader.open(file.toString(), false)) {
+            csv.next();
+            String intResult = outcome(() -> Integer.parseInt(field), () -> csv.getInt(1));
+            String longResult = outcome(() -> Long.parseLong(field), () -> csv.getLong(1));
+            String doubleResult = outcome(() -> Double.parseDouble(field), () -> csv.getDouble(1));
+            boolean passed = intResult == null && longResult == null && doubleResult == null;
+            System.out.printf("  %-30s -> %s%n", "\"" + number + "\"", passed ? "PASS"
+                    : "FAIL " + intResult + " " + longResult + " " + doubleResult);
+            return passed;
+        }
+    }
+
+    // null if both sides return the same value or both throw NumberFormatException
+    private static String outcome(java.util.function.Supplier<Object> expected,
+                                  java.util.function.Supplier<Object> actual) {
+        Object a;
+        Object b;
+        try {
+            a = expected.get();
+        } catch (NumberFormatException e) {
+            a = "NumberFormatException";
+        }
+        try {
+            b = actual.get();
+        } catch (NumberFormatException e) {
+            b = "NumberFormatException";
+        }
+        return a.equals(b) ? null : a + " vs " + b;
+    }
+
+    private static boolean timeRoster(Path dir) throws IOException {
+        Path file = dir.resolve("horses.csv");
+        List<String> lines = new ArrayList<>();
+        lines.add("name,symbol,confidence,breed,coatColor,equipment,accessories");
+        for (int i = 0; i < ROSTER_ROWS; i++) {
+            lines.add(String.format("\"Horse %d\",'%c',0.%02d,Thoroughbred,Bay,Light Saddle;Training Bridle,Tail Bag",
+                    i, (char) ('A' + i % 26), i % 100));
+        }
+        Files.write(file, lines);
+
+        boolean passed = true;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            double oldTotal = 0;
+            for (String[] data : oldRows(Files.newBufferedReader(file))) {
+                if (data.length < 7 || data[0].equals("name")) continue;
+                oldTotal += Double.parseDouble(data[2]) + data[0].replace("\"", "").length() + data[1].charAt(1);
+            }
+            long oldNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            double newTotal = 0;
+            try (CsvReader csv = CsvReader.open(file.toString(), true)) {
+                while (csv.next()) {
+                    if (csv.getFieldCount() < 7) continue;
+                    newTotal += csv.getDouble(2) + csv.getUnquoted(0).length() + csv.getChar(1, 1);
+                }
+            }
+            long newNanos = System.nanoTime() - start;
+
+            passed &= oldTotal == newTotal;
+            System.out.printf("  %,d horses: BufferedReader + parseCSVLine %.0f ms, CsvReader %.0f ms -> %s%n",
+                    ROSTER_ROWS, oldNanos / 1e6, newNanos / 1e6, oldTotal == newTotal ? "PASS" : "FAIL");
+        }
+        return passed;
+    }
+
+    // FileIO's readCsvFile and parseCSVLine as they were
+    private static List<String[]> oldRows(BufferedReader reader) throws IOException {
+        List<String[]> records = new ArrayList<>();
+        try (reader) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                List<String> values = new ArrayList<>();
+                StringBuilder currentValue = new StringBuilder();
+                boolean inQuotes = false;
+                for (char c : line.toCharArray()) {
+                    if (c == '"' || c == '\'') {
+                        inQuotes = !inQuotes;
+                        currentValue.append(c);
+                    } else if (c == ',' && !inQuotes) {
+                        values.add(currentValue.toString().trim());
+                        currentValue.setLength(0);
+                    } else {
+                        currentValue.append(c);
+                    }
+                }
+                values.add(currentValue.toString().trim());
+                records.add(values.toArray(new String[0]));
+            }
+        }
+        return records;
+    }
+
+    private static String describe(List<String[]> rows) {
+        StringBuilder text = new StringBuilder();
+        for (String[] row : rows) {
+            text.append(Arrays.toString(row));
+        }
+        return text.toString();
+    }
+}
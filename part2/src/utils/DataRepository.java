@@ -0,0 +1,262 @@
+package utils;
+
+import models.Horse;
+import models.HorseItem;
+import models.Track;
+import models.Transaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps horses, tracks, equipment, accessories and transactions in memory so screens and
+ * races read them without touching disk. Equipment and accessories come from FileIO's
+ * item catalogs, which already hold them indexed in memory.
+ * <p>
+ * Everything is loaded once, when the repository is first used. Horses and tracks are
+ * handed out as the repository's own objects, so a change made through one screen is seen
+ * by every other. Callers that change them mark the set dirty, and dirty sets are written
+ * back through FileIO on a background thread shortly afterwards (changes made in quick
+ * succession are written together) and once more when the app exits. Horses are turned
+ * into rows under the repository's lock, so edits to a horse's equipment go through
+ * editHorse rather than being made while a write-back reads them.
+ */
+public class DataRepository {
+    private static final long WRITE_BACK_DELAY_MILLIS = 500;
+    private static DataRepository instance;
+
+    private final List<Horse> horses;
+    // The same horses by FileIO.horseKey(name, symbol), for keyed updates
+    private final Map<String, Horse> horsesByKey = new HashMap<>();
+    private final List<Track> tracks;
+    private final List<Transaction> transactions;
+
+    private boolean horsesDirty;
+    private boolean tracksDirty;
+    private boolean transactionsDirty;
+    private boolean writeBackScheduled;
+
+    private final ScheduledExecutorService writer;
+    // Held while writing, so a shutdown flush and a scheduled one never write the same file at once
+    private final Object writeLock = new Object();
+
+    private DataRepository() {
+        horses = new ArrayList<>(Arrays.asList(FileIO.ingestHorses()));
+        indexHorses();
+        tracks = new ArrayList<>(FileIO.loadTracks());
+        transactions = new ArrayList<>(FileIO.loadTransactions());
+
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "data-repository-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::flush));
+        } catch (IllegalStateException e) {
+            // First used while the app is already exiting (by RaceResultWriter's own hook),
+            // which flushes the repository itself
+        }
+    }
+
+    /**
+     * Returns the repository, loading it from disk on first use. Call this off the EDT
+     * (startRaceGUI does so before building any screen) to keep that first load off it too.
+     */
+    public static synchronized DataRepository getInstance() {
+        if (instance == null) {
+            instance = new DataRepository();
+        }
+        return instance;
+    }
+
+    /**
+     * @return every horse, in file order
+     */
+    public synchronized Horse[] getHorses() {
+        return horses.toArray(new Horse[0]);
+    }
+
+    /**
+     * @return the horse with this name, or null if there is none
+     */
+    public synchronized Horse findHorse(String name) {
+        for (Horse horse : horses) {
+            if (horse.getName().equals(name)) {
+                return horse;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replaces the whole stable, for example after horses were added or removed.
+     */
+    public synchronized void setHorses(Horse[] newHorses) {
+        horses.clear();
+        horses.addAll(Arrays.asList(newHorses));
+        indexHorses();
+        markHorsesDirty();
+    }
+
+    private void indexHorses() {
+        horsesByKey.clear();
+        for (Horse horse : horses) {
+            // The first of any duplicates, as a scan in file order would find
+            horsesByKey.putIfAbsent(FileIO.horseKey(horse.getName(), horse.getSymbol()), horse);
+        }
+    }
+
+    /**
+     * Records that one or more of the repository's horses were changed in place.
+     */
+    public synchronized void markHorsesDirty() {
+        horsesDirty = true;
+        scheduleWriteBack();
+    }
+
+    /**
+     * Changes one of the repository's horses under its lock, then marks the horses dirty.
+     */
+    public synchronized void editHorse(Horse horse, Consumer<Horse> edit) {
+        edit.accept(horse);
+        // The edit may have changed the symbol
+        indexHorses();
+        markHorsesDirty();
+    }
+
+    /**
+     * Sets the confidence of several of the repository's horses, leaving one save of
+     * horses.csv to the write-back. Each horse is looked up by key, one lookup per entry.
+     *
+     * @param confidences new confidence by FileIO.horseKey(name, symbol)
+     */
+    public synchronized void updateConfidences(Map<String, Double> confidences) {
+        boolean changed = false;
+        for (Map.Entry<String, Double> entry : confidences.entrySet()) {
+            Horse horse = horsesByKey.get(entry.getKey());
+            if (horse != null) {
+                horse.setConfidence(entry.getValue());
+                changed = true;
+            }
+        }
+        if (changed) {
+            markHorsesDirty();
+        }
+    }
+
+    /**
+     * @return every track, in file order; the list is a copy, the tracks are not
+     */
+    public synchronized List<Track> getTracks() {
+        return new ArrayList<>(tracks);
+    }
+
+    /**
+     * @return the track with this name, or null if there is none
+     */
+    public synchronized Track findTrack(String name) {
+        for (Track track : tracks) {
+            if (track.getName().equals(name)) {
+                return track;
+            }
+        }
+        return null;
+    }
+
+    public synchronized void setTracks(List<Track> newTracks) {
+        tracks.clear();
+        tracks.addAll(newTracks);
+        markTracksDirty();
+    }
+
+    /**
+     * Records that one or more of the repository's tracks were changed in place.
+     */
+    public synchronized void markTracksDirty() {
+        tracksDirty = true;
+        scheduleWriteBack();
+    }
+
+    /**
+     * @return the equipment catalog; read-only, shared with FileIO's item index
+     */
+    public List<HorseItem> getEquipment() {
+        return FileIO.loadEquipment();
+    }
+
+    /**
+     * @return the accessory catalog; read-only, shared with FileIO's item index
+     */
+    public List<HorseItem> getAccessories() {
+        return FileIO.loadAccessories();
+    }
+
+    /**
+     * @return every transaction, oldest first; the list is a copy
+     */
+    public synchronized List<Transaction> getTransactions() {
+        return new ArrayList<>(transactions);
+    }
+
+    public synchronized void addTransaction(Transaction transaction) {
+        transactions.add(transaction);
+        transactionsDirty = true;
+        scheduleWriteBack();
+    }
+
+    /**
+     * Writes every dirty set to disk now, on the calling thread.
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            List<String> horsesToWrite = null;
+            List<Track> tracksToWrite = null;
+            List<Transaction> transactionsToWrite = null;
+            synchronized (this) {
+                writeBackScheduled = false;
+                if (horsesDirty) {
+                    // Formatted here: equipment lists are only safe to read under this lock
+                    horsesToWrite = FileIO.formatHorses(horses.toArray(new Horse[0]));
+                    horsesDirty = false;
+                }
+                if (tracksDirty) {
+                    tracksToWrite = new ArrayList<>(tracks);
+                    tracksDirty = false;
+                }
+                if (transactionsDirty) {
+                    transactionsToWrite = new ArrayList<>(transactions);
+                    transactionsDirty = false;
+                }
+            }
+
+            if (horsesToWrite != null && !FileIO.saveHorseLines(horsesToWrite)) {
+                markHorsesDirty();
+            }
+            if (tracksToWrite != null && !FileIO.saveTracks(tracksToWrite)) {
+                markTracksDirty();
+            }
+            if (transactionsToWrite != null && !FileIO.saveTransactions(transactionsToWrite)) {
+                synchronized (this) {
+                    transactionsDirty = true;
+                    scheduleWriteBack();
+                }
+            }
+        }
+    }
+
+    private void scheduleWriteBack() {
+        if (writeBackScheduled) {
+            return;
+        }
+        writeBackScheduled = true;
+        writer.schedule(this::flush, WRITE_BACK_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+}
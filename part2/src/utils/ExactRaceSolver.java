@@ -0,0 +1,233 @@
+package utils;
+
+import models.Horse;
+import models.ModelParameters;
+import models.Race;
+import models.RaceKernel;
+import models.Track;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Works out a race's win, place and show probabilities exactly instead of by sampling.
+ * <p>
+ * Lanes never interact, so each horse on its own is a Markov chain over its distance:
+ * every tick it moves with its move chance at that distance, then falls with its fall
+ * chance unless it has just crossed the line. Stepping the chain's probability mass tick
+ * by tick gives each lane's finish-tick distribution and its chance of falling. The lanes
+ * are then combined: a lane finishing on tick t wins if every lower lane finishes after t
+ * and every higher lane no earlier than t (same-tick ties go to the lower lane, as in the
+ * engines), and its placing is one plus the number of lanes ahead of it, which is a sum
+ * of independent indicators.
+ * <p>
+ * The cost grows with lanes x track length x ticks to drain the chain, so races with more
+ * lane-distance states than the cut-off are handed to MonteCarloSimulator instead.
+ */
+public class ExactRaceSolver {
+    public static final int DEFAULT_MAX_STATES = 4_096;
+    private static final int FALLBACK_RUNS = 200_000;
+    // Stop stepping a lane once less than this much of its mass is still running
+    private static final double EPSILON = 1e-12;
+
+    /**
+     * Per-lane outcome probabilities, exact or estimated.
+     */
+    public static class Solution {
+        private final boolean exact;
+        private final double[] win;
+        private final double[] place;
+        private final double[] show;
+        private final double[] fall;
+
+        private Solution(boolean exact, double[] win, double[] place, double[] show, double[] fall) {
+            this.exact = exact;
+            this.win = win;
+            this.place = place;
+            this.show = show;
+            this.fall = fall;
+        }
+
+        /** @return true if solved exactly, false if estimated by simulation */
+        public boolean isExact() { return exact; }
+        public int getLaneCount() { return win.length; }
+        public double getWinProbability(int lane) { return win[lane]; }
+        public double getPlaceProbability(int lane) { return place[lane]; }
+        public double getShowProbability(int lane) { return show[lane]; }
+        public double getFallRate(int lane) { return fall[lane]; }
+    }
+
+    public static Solution solve(Track track, Horse[] lineup) {
+        return solve(track, lineup, ModelParameters.DEFAULT, DEFAULT_MAX_STATES);
+    }
+
+    /**
+     * @param maxStates largest lanes x track length solved exactly; bigger races are simulated
+     */
+    public static Solution solve(Track track, Horse[] lineup, ModelParameters parameters, int maxStates) {
+        if (lineup.length == 0) {
+            throw new IllegalArgumentException("Need at least one horse");
+        }
+
+        Track raceTrack = new Track(track.getName(), lineup.length, track.getLength(),
+                track.getShape(), track.getCondition());
+        if (!isTractable(raceTrack, lineup, maxStates)) {
+            SimulationResult result = MonteCarloSimulator.simulate(raceTrack, lineup, FALLBACK_RUNS,
+                    new SplittableRandom().nextLong(), MonteCarloSimulator.Engine.EVENT, parameters);
+            return fromSimulation(result);
+        }
+
+        double[] confidences = new double[lineup.length];
+        for (int lane = 0; lane < lineup.length; lane++) {
+            confidences[lane] = lineup[lane].getConfidence();
+        }
+        RaceKernel tables = RaceKernel.compile(raceTrack, lineup, confidences, parameters);
+
+        int laneCount = lineup.length;
+        double[][] finishAt = new double[laneCount][];
+        double[] fall = new double[laneCount];
+        int horizon = 0;
+        for (int lane = 0; lane < laneCount; lane++) {
+            finishAt[lane] = finishDistribution(tables, lane, fall);
+            horizon = Math.max(horizon, finishAt[lane].length);
+        }
+
+        return combine(finishAt, fall, horizon);
+    }
+
+    /**
+     * @return true if the race is small enough to be solved exactly under maxStates
+     */
+    public static boolean isTractable(Track track, Horse[] lineup, int maxStates) {
+        return (long) lineup.length * Math.max(1, track.getLength()) <= maxStates;
+    }
+
+    /**
+     * Steps one lane's distance distribution until its mass has drained or the race's tick
+     * cap is reached. Mass still running at the cap never finishes, as in the engines.
+     *
+     * @return the chance of crossing the line on each tick (index 0 is unused)
+     */
+    private static double[] finishDistribution(RaceKernel tables, int lane, double[] fall) {
+        int length = tables.getLength();
+        double fallChance = tables.getFallChance(lane);
+        if (length <= 0) {
+            return new double[1];
+        }
+
+        double[] at = new double[length];
+        double[] next = new double[length];
+        at[0] = 1.0;
+        double running = 1.0;
+
+        double[] finishAt = new double[64];
+        int tick = 0;
+        while (running > EPSILON && tick < Race.MAX_SIMULATED_TICKS) {
+            tick++;
+            if (tick == finishAt.length) {
+                finishAt = Arrays.copyOf(finishAt, finishAt.length * 2);
+            }
+
+            Arrays.fill(next, 0.0);
+            double finished = 0.0;
+            double fell = 0.0;
+            for (int d = 0; d < length; d++) {
+                double mass = at[d];
+                if (mass == 0.0) continue;
+                double move = Math.min(1.0, tables.getMoveChance(lane, d));
+                double moved = mass * move;
+                double stayed = mass - moved;
+
+                if (d + 1 == length) {
+                    // Crossing the line is safe
+                    finished += moved;
+                } else {
+                    fell += moved * fallChance;
+                    next[d + 1] += moved * (1.0 - fallChance);
+                }
+                fell += stayed * fallChance;
+                next[d] += stayed * (1.0 - fallChance);
+            }
+
+            finishAt[tick] = finished;
+            fall[lane] += fell;
+            running -= finished + fell;
+            // A lane stuck with no move or fall chance never drains; stop once nothing changes
+            if (finished == 0.0 && fell == 0.0 && Arrays.equals(at, next)) {
+                break;
+            }
+            double[] swap = at;
+            at = next;
+            next = swap;
+        }
+
+        return Arrays.copyOf(finishAt, tick + 1);
+    }
+
+    private static Solution combine(double[][] finishAt, double[] fall, int horizon) {
+        int laneCount = finishAt.length;
+
+        // before[lane][t]: chance the lane has crossed the line before tick t
+        double[][] before = new double[laneCount][horizon + 1];
+        for (int lane = 0; lane < laneCount; lane++) {
+            double total = 0.0;
+            for (int t = 0; t <= horizon; t++) {
+                before[lane][t] = total;
+                if (t < finishAt[lane].length) {
+                    total += finishAt[lane][t];
+                }
+            }
+        }
+
+        double[] win = new double[laneCount];
+        double[] place = new double[laneCount];
+        double[] show = new double[laneCount];
+        // ahead[k]: chance exactly k other lanes are ahead, for k = 0..2 (3 means three or more)
+        double[] ahead = new double[4];
+        for (int lane = 0; lane < laneCount; lane++) {
+            for (int t = 1; t < finishAt[lane].length; t++) {
+                double p = finishAt[lane][t];
+                if (p == 0.0) continue;
+
+                Arrays.fill(ahead, 0.0);
+                ahead[0] = 1.0;
+                for (int other = 0; other < laneCount; other++) {
+                    if (other == lane) continue;
+                    double q = before[other][t];
+                    if (other < lane && t < finishAt[other].length) {
+                        q += finishAt[other][t];
+                    }
+                    q = Math.min(1.0, q);
+                    if (q == 0.0) continue;
+                    // Three or more ahead stays three or more
+                    ahead[3] += ahead[2] * q;
+                    for (int k = 2; k > 0; k--) {
+                        ahead[k] = ahead[k] * (1.0 - q) + ahead[k - 1] * q;
+                    }
+                    ahead[0] *= 1.0 - q;
+                }
+
+                win[lane] += p * ahead[0];
+                place[lane] += p * (ahead[0] + ahead[1]);
+                show[lane] += p * (ahead[0] + ahead[1] + ahead[2]);
+            }
+        }
+
+        return new Solution(true, win, place, show, fall);
+    }
+
+    private static Solution fromSimulation(SimulationResult result) {
+        int laneCount = result.getLaneCount();
+        double[] win = new double[laneCount];
+        double[] place = new double[laneCount];
+        double[] show = new double[laneCount];
+        double[] fall = new double[laneCount];
+        for (int lane = 0; lane < laneCount; lane++) {
+            win[lane] = result.getWinProbability(lane);
+            place[lane] = result.getPlaceProbability(lane);
+            show[lane] = result.getShowProbability(lane);
+            fall[lane] = result.getFallRate(lane);
+        }
+        return new Solution(false, win, place, show, fall);
+    }
+}
@@ -0,0 +1,77 @@
+package utils;
+
+import models.Horse;
+import models.HorseItem;
+import models.Track;
+
+/**
+ * Statistical check that ExactRaceSolver's probabilities match the tick engine's.
+ * For each scenario every lane's win, place, show and fall rates from simulation must lie
+ * within 4.5 standard errors of the exact values, and the exact solve must be faster.
+ */
+public class ExactRaceSolverTest {
+    private static final int RUNS = 200_000;
+    private static final double MAX_Z = 4.5;
+
+    public static void main(String[] args) {
+        Horse[] lineup = {
+            new Horse('A', "Thunder", 0.5, "", ""),
+            new Horse('B', "Lightning", 0.8, "", ""),
+            new Horse('C', "Tornado", 0.95, "", ""),
+            new Horse('D', "Blizzard", 0.2, "", "")
+        };
+        lineup[1].addEquipment(new HorseItem("Light Saddle", "Equipment", 1.1, 1.0, 1.0, ""));
+        lineup[2].addEquipment(new HorseItem("Heavy Saddle", "Equipment", 0.9, 1.2, 1.0, ""));
+        lineup[3].addEquipment(new HorseItem("Blinkers", "Equipment", 1.0, 1.0, 1.3, ""));
+
+        boolean allPassed = true;
+        int test = 1;
+        for (Track.TrackCondition condition : Track.TrackCondition.values()) {
+            for (Track.TrackShape shape : Track.TrackShape.values()) {
+                Track track = new Track("Test", lineup.length, 20, shape, condition);
+                System.out.println("Test " + test++ + ": " + shape + " / " + condition);
+                allPassed &= compare(track, lineup);
+                System.out.println();
+            }
+        }
+
+        System.out.println("Exact solver matches simulation: " + allPassed + " (Expected: true)");
+    }
+
+    private static boolean compare(Track track, Horse[] lineup) {
+        long start = System.nanoTime();
+        ExactRaceSolver.Solution exact = ExactRaceSolver.solve(track, lineup);
+        long exactNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        SimulationResult simulated = MonteCarloSimulator.simulate(track, lineup, RUNS, 1L,
+                MonteCarloSimulator.Engine.TICK);
+        long simulatedNanos = System.nanoTime() - start;
+
+        boolean passed = exact.isExact();
+        for (int lane = 0; lane < lineup.length; lane++) {
+            boolean lanePassed = z(exact.getWinProbability(lane), simulated.getWinProbability(lane)) < MAX_Z
+                    && z(exact.getPlaceProbability(lane), simulated.getPlaceProbability(lane)) < MAX_Z
+                    && z(exact.getShowProbability(lane), simulated.getShowProbability(lane)) < MAX_Z
+                    && z(exact.getFallRate(lane), simulated.getFallRate(lane)) < MAX_Z;
+            passed &= lanePassed;
+            System.out.printf("Lane %d: win %.4f vs %.4f, place %.4f vs %.4f, fall %.4f vs %.4f -> %s%n",
+                    lane + 1,
+                    exact.getWinProbability(lane), simulated.getWinProbability(lane),
+                    exact.getPlaceProbability(lane), simulated.getPlaceProbability(lane),
+                    exact.getFallRate(lane), simulated.getFallRate(lane),
+                    lanePassed ? "OK" : "MISMATCH");
+        }
+        System.out.printf("Exact %.2f ms, %d simulated races %.2f ms%n",
+                exactNanos / 1e6, RUNS, simulatedNanos / 1e6);
+        return passed;
+    }
+
+    private static double z(double exact, double estimate) {
+        double error = Math.sqrt(exact * (1.0 - exact) / RUNS);
+        if (error == 0.0) {
+            return estimate == exact ? 0.0 : Double.POSITIVE_INFINITY;
+        }
+        return Math.abs(exact - estimate) / error;
+    }
+}
@@ -5,6 +5,7 @@ import models.Track;
 import models.HorseItem;
 import models.Transaction;
 import models.Bet;
+import models.RaceResult;
 
 import java.io.*;
 import java.nio.file.*;
@@ -19,25 +20,17 @@ public class FileIO {
     private static final String COAT_COLORS_CSV_FILE = BASE_PATH + "horses/coat_colors.csv";
     private static final String EQUIPMENT_CSV_FILE = BASE_PATH + "horses/equipment.csv";
     private static final String ACCESSORIES_CSV_FILE = BASE_PATH + "horses/accessories.csv";
-    private static final String RACES_CSV_FILE = BASE_PATH + "races.csv";
+    // Package-private so batch tools can reach its appender
+    static final String RACES_CSV_FILE = BASE_PATH + "races.csv";
     private static final String BETS_CSV_FILE = BASE_PATH + "bets/bets.csv";
+    private static final String REPLAYS_DIR = BASE_PATH + "replays/";
+    // Older recordings are deleted once there are more than this
+    private static final int MAX_REPLAYS = 50;
     
-    private static final int BUFFER_SIZE = 8192;
 
+    private static final ItemCatalog EQUIPMENT_CATALOG = new ItemCatalog(EQUIPMENT_CSV_FILE, FileIO::parseEquipment);
+    private static final ItemCatalog ACCESSORY_CATALOG = new ItemCatalog(ACCESSORIES_CSV_FILE, FileIO::parseAccessories);
 
-    private static List<String[]> readCsvFile(String filePath, boolean skipHeader) {
-        List<String[]> records = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath), BUFFER_SIZE)) {
-            String line;
-            if (skipHeader) br.readLine();
-            while ((line = br.readLine()) != null) {
-                records.add(parseCSVLine(line));
-            }
-        } catch (IOException e) {
-            System.err.println("Error reading file " + filePath + ": " + e.getMessage());
-        }
-        return records;
-    }
 
     private static boolean writeCsvFile(String filePath, List<String> lines, String header) {
         try {
@@ -62,95 +55,65 @@ public class FileIO {
         }
     }
 
-    private static String[] parseCSVLine(String line) {
-        List<String> values = new ArrayList<>();
-        StringBuilder currentValue = new StringBuilder();
-        boolean inQuotes = false;
-        
-        for (char c : line.toCharArray()) {
-            if (c == '"' || c == '\'') {
-                inQuotes = !inQuotes;
-                currentValue.append(c);
-            } else if (c == ',' && !inQuotes) {
-                values.add(currentValue.toString().trim());
-                currentValue.setLength(0);
-            } else {
-                currentValue.append(c);
-            }
-        }
-        values.add(currentValue.toString().trim());
-        return values.toArray(new String[0]);
-    }
-
     public static Horse[] ingestHorses() {
-        List<String[]> horseData = readCsvFile(HORSE_CSV_FILE, true);
         List<Horse> horses = new ArrayList<>();
+        Map<String, HorseItem> equipmentByName = EQUIPMENT_CATALOG.getIndex();
+        Map<String, HorseItem> accessoriesByName = ACCESSORY_CATALOG.getIndex();
         
-        for (String[] data : horseData) {
-            if (data.length < 5) continue;
-            
-            String name = data[0].replace("\"", "");
-            char symbol = data[1].charAt(1);
-            double confidence = Double.parseDouble(data[2]);
-            Horse horse = new Horse(symbol, name, confidence, data[3], data[4]);
-            
-            // Add equipment
-            if (data.length > 5 && !data[5].isEmpty()) {
-                String[] equipment = data[5].split(";");
-                for (String itemName : equipment) {
-                    HorseItem item = findEquipmentByName(itemName);
-                    if (item != null) {
-                        horse.addEquipment(item);
+        try (CsvReader csv = CsvReader.open(HORSE_CSV_FILE, true)) {
+            while (csv.next()) {
+                if (csv.getFieldCount() < 5) continue;
+                
+                String name = csv.getUnquoted(0);
+                char symbol = csv.getChar(1, 1);
+                double confidence = csv.getDouble(2);
+                Horse horse = new Horse(symbol, name, confidence, csv.getString(3), csv.getString(4));
+                
+                // Add equipment
+                if (csv.getFieldCount() > 5 && !csv.isEmpty(5)) {
+                    String[] equipment = csv.getString(5).split(";");
+                    for (String itemName : equipment) {
+                        HorseItem item = equipmentByName.get(itemName);
+                        if (item != null) {
+                            horse.addEquipment(item);
+                        }
                     }
                 }
-            }
-            
-            // Add accessories
-            if (data.length > 6 && !data[6].isEmpty()) {
-                String[] accessories = data[6].split(";");
-                for (String itemName : accessories) {
-                    HorseItem item = findAccessoryByName(itemName);
-                    if (item != null) {
-                        horse.addAccessory(item);
+                
+                // Add accessories
+                if (csv.getFieldCount() > 6 && !csv.isEmpty(6)) {
+                    String[] accessories = csv.getString(6).split(";");
+                    for (String itemName : accessories) {
+                        HorseItem item = accessoriesByName.get(itemName);
+                        if (item != null) {
+                            horse.addAccessory(item);
+                        }
                     }
                 }
+                
+                horses.add(horse);
             }
-            
-            horses.add(horse);
         }
         
         return horses.toArray(new Horse[0]);
     }
 
-    public static void updateHorseConfidence(String name, char symbol, double newConfidence) {
-        List<String[]> horseData = readCsvFile(HORSE_CSV_FILE, true);
-        List<String> updatedLines = new ArrayList<>();
-        updatedLines.add("name,symbol,confidence,breed,coatColor,equipment,accessories");
-
-        for (String[] data : horseData) {
-            String horseName = data[0].replace("\"", "");
-            char horseSymbol = data[1].charAt(1);
-            
-            if (horseName.equals(name) && horseSymbol == symbol) {
-                data[2] = String.format("%.2f", newConfidence);
-            }
-            updatedLines.add(String.join(",", data));
-        }
-        writeCsvFile(HORSE_CSV_FILE, updatedLines, null);
+    public static String horseKey(String name, char symbol) {
+        return name + "," + symbol;
     }
 
     public static List<Transaction> loadTransactions() {
         List<Transaction> transactions = new ArrayList<>();
-        List<String[]> data = readCsvFile(TRANSACTION_CSV_FILE, true);
-        
-        for (String[] parts : data) {
-            if (parts.length == 4) {
-                transactions.add(new Transaction(
-                    parts[0],
-                    parts[1],
-                    parts[2],
-                    Double.parseDouble(parts[3])
-                ));
+        try (CsvReader csv = CsvReader.open(TRANSACTION_CSV_FILE, true)) {
+            while (csv.next()) {
+                if (csv.getFieldCount() == 4) {
+                    transactions.add(new Transaction(
+                        csv.getString(0),
+                        csv.getString(1),
+                        csv.getString(2),
+                        csv.getDouble(3)
+                    ));
+                }
             }
         }
         return transactions;
@@ -166,26 +129,26 @@ public class FileIO {
 
     public static List<Track> loadTracks() {
         List<Track> tracks = new ArrayList<>();
-        List<String[]> data = readCsvFile(TRACKS_CSV_FILE, true);
-        
-        for (String[] parts : data) {
-            if (parts.length >= 3) {
-                Track track = new Track(
-                    parts[0],
-                    3,
-                    Integer.parseInt(parts[1]),
-                    Track.TrackShape.valueOf(parts[2]),
-                    Track.TrackCondition.DRY
-                );
-                
-                if (parts.length >= 4 && !parts[3].isEmpty()) {
-                    track.setBestTime(Double.parseDouble(parts[3]));
-                }
-                if (parts.length >= 5 && !parts[4].isEmpty()) {
-                    track.setBestHorse(parts[4]);
+        try (CsvReader csv = CsvReader.open(TRACKS_CSV_FILE, true)) {
+            while (csv.next()) {
+                if (csv.getFieldCount() >= 3) {
+                    Track track = new Track(
+                        csv.getString(0),
+                        3,
+                        csv.getInt(1),
+                        Track.TrackShape.valueOf(csv.getString(2)),
+                        Track.TrackCondition.DRY
+                    );
+                    
+                    if (csv.getFieldCount() >= 4 && !csv.isEmpty(3)) {
+                        track.setBestTime(csv.getDouble(3));
+                    }
+                    if (csv.getFieldCount() >= 5 && !csv.isEmpty(4)) {
+                        track.setBestHorse(csv.getString(4));
+                    }
+                    
+                    tracks.add(track);
                 }
-                
-                tracks.add(track);
             }
         }
         return tracks;
@@ -206,80 +169,83 @@ public class FileIO {
 
     public static List<String> loadBreeds() {
         List<String> breeds = new ArrayList<>();
-        List<String[]> data = readCsvFile(BREEDS_CSV_FILE, false);
-        if (!data.isEmpty()) {
-            breeds.addAll(Arrays.asList(data.get(0)));
+        try (CsvReader csv = CsvReader.open(BREEDS_CSV_FILE, false)) {
+            if (csv.next()) {
+                breeds.addAll(Arrays.asList(csv.getFields()));
+            }
         }
         return breeds;
     }
 
     public static List<String> loadCoatColors() {
         List<String> colors = new ArrayList<>();
-        List<String[]> data = readCsvFile(COAT_COLORS_CSV_FILE, true);
-        for (String[] parts : data) {
-            if (parts.length > 0) {
-                colors.add(parts[0]);
+        try (CsvReader csv = CsvReader.open(COAT_COLORS_CSV_FILE, true)) {
+            while (csv.next()) {
+                colors.add(csv.getString(0));
             }
         }
         return colors;
     }
 
+    /**
+     * @return the equipment catalog in file order; read-only, and only re-read from disk
+     *         when equipment.csv changes
+     */
     public static List<HorseItem> loadEquipment() {
+        return EQUIPMENT_CATALOG.getItems();
+    }
+
+    /**
+     * @return the accessory catalog in file order; read-only, and only re-read from disk
+     *         when accessories.csv changes
+     */
+    public static List<HorseItem> loadAccessories() {
+        return ACCESSORY_CATALOG.getItems();
+    }
+
+    private static List<HorseItem> parseEquipment(String filePath) {
         List<HorseItem> equipment = new ArrayList<>();
-        List<String[]> data = readCsvFile(EQUIPMENT_CSV_FILE, true);
-        
-        for (String[] parts : data) {
-            if (parts.length >= 6) {
-                equipment.add(new HorseItem(
-                    parts[0],
-                    parts[1],
-                    Double.parseDouble(parts[2]),
-                    Double.parseDouble(parts[3]),
-                    Double.parseDouble(parts[4]),
-                    parts[5]
-                ));
+        try (CsvReader csv = CsvReader.open(filePath, true)) {
+            while (csv.next()) {
+                if (csv.getFieldCount() >= 6) {
+                    equipment.add(new HorseItem(
+                        csv.getString(0),
+                        csv.getString(1),
+                        csv.getDouble(2),
+                        csv.getDouble(3),
+                        csv.getDouble(4),
+                        csv.getString(5)
+                    ));
+                }
             }
         }
         return equipment;
     }
 
-    public static List<HorseItem> loadAccessories() {
+    private static List<HorseItem> parseAccessories(String filePath) {
         List<HorseItem> accessories = new ArrayList<>();
-        List<String[]> data = readCsvFile(ACCESSORIES_CSV_FILE, true);
-        
-        for (String[] parts : data) {
-            if (parts.length >= 3) {
-                accessories.add(new HorseItem(
-                    parts[0],
-                    parts[1],
-                    parts[2]
-                ));
+        try (CsvReader csv = CsvReader.open(filePath, true)) {
+            while (csv.next()) {
+                if (csv.getFieldCount() >= 3) {
+                    accessories.add(new HorseItem(
+                        csv.getString(0),
+                        csv.getString(1),
+                        csv.getString(2)
+                    ));
+                }
             }
         }
         return accessories;
     }
 
-    private static HorseItem findEquipmentByName(String name) {
-        List<HorseItem> equipment = loadEquipment();
-        for (HorseItem item : equipment) {
-            if (item.getName().equals(name)) {
-                return item;
-            }
-        }
-        return null;
-    }
-    
-    private static HorseItem findAccessoryByName(String name) {
-        List<HorseItem> accessories = loadAccessories();
-        for (HorseItem item : accessories) {
-            if (item.getName().equals(name)) {
-                return item;
-            }
-        }
-        return null;
+    public static boolean saveHorses(Horse[] horses) {
+        return saveHorseLines(formatHorses(horses));
     }
 
-    public static void saveHorses(Horse[] horses) {
+    /**
+     * @return the horses.csv rows for these horses, without the header
+     */
+    public static List<String> formatHorses(Horse[] horses) {
         List<String> lines = new ArrayList<>();
         for (Horse horse : horses) {
             String equipmentStr = String.join(";", horse.getEquipment().stream()
@@ -289,7 +255,8 @@ public class FileIO {
                 .map(HorseItem::getName)
                 .toArray(String[]::new));
 
-            lines.add(String.format("%s,%s,%.2f,%s,%s,%s,%s",
+            // Same quoting as the shipped file, which ingestHorses expects
+            lines.add(String.format("\"%s\",'%s',%.2f,%s,%s,%s,%s",
                 horse.getName(),
                 horse.getSymbol(),
                 horse.getConfidence(),
@@ -299,7 +266,14 @@ public class FileIO {
                 accessoriesStr
             ));
         }
-        writeCsvFile(HORSE_CSV_FILE, lines, "name,symbol,confidence,breed,coatColor,equipment,accessories");
+        return lines;
+    }
+
+    /**
+     * Rewrites horses.csv with rows made by formatHorses.
+     */
+    public static boolean saveHorseLines(List<String> lines) {
+        return writeCsvFile(HORSE_CSV_FILE, lines, "name,symbol,confidence,breed,coatColor,equipment,accessories");
     }
 
     public static void storeRaceResult(String raceID, String horseName, char symbol, 
@@ -323,27 +297,27 @@ public class FileIO {
 
     public static List<Bet> loadBets() {
         List<Bet> bets = new ArrayList<>();
-        List<String[]> data = readCsvFile(BETS_CSV_FILE, true);
-        
-        for (String[] parts : data) {
-            if (parts.length == 8) {
-                Horse tempHorse = new Horse(
-                    parts[4].charAt(0),  // horse symbol
-                    parts[3],            // horse name
-                    1.0,                 // default confidence
-                    "",                  // empty breed
-                    ""                   // empty coat color
-                );
-
-                Bet bet = new Bet(
-                    parts[2],  // raceId
-                    tempHorse,
-                    Double.parseDouble(parts[5]) // amount
-                );
-                bet.setWon(Boolean.parseBoolean(parts[6]));
-                bet.setWinnings(Double.parseDouble(parts[7]));
-                
-                bets.add(bet);
+        try (CsvReader csv = CsvReader.open(BETS_CSV_FILE, true)) {
+            while (csv.next()) {
+                if (csv.getFieldCount() == 8) {
+                    Horse tempHorse = new Horse(
+                        csv.getChar(4, 0),   // horse symbol
+                        csv.getString(3),    // horse name
+                        1.0,                 // default confidence
+                        "",                  // empty breed
+                        ""                   // empty coat color
+                    );
+
+                    Bet bet = new Bet(
+                        csv.getString(2),  // raceId
+                        tempHorse,
+                        csv.getDouble(5)   // amount
+                    );
+                    bet.setWon(csv.getBoolean(6));
+                    bet.setWinnings(csv.getDouble(7));
+                    
+                    bets.add(bet);
+                }
             }
         }
         return bets;
@@ -359,30 +333,38 @@ public class FileIO {
     }
 
 
+    /**
+     * Reads a horse's statistics from RaceHistoryStore, or from races.csv itself if the
+     * store can't be opened.
+     */
     public static Map<String, Object> getHorseStats(String horseName) {
+        RaceHistoryStore history = RaceHistoryStore.getInstance();
+        if (history != null) {
+            return history.getHorseStats(horseName);
+        }
+
         Map<String, Object> stats = new HashMap<>();
-        List<String[]> data = readCsvFile(RACES_CSV_FILE, true);
-        
         int totalRaces = 0;
         int wins = 0;
         double totalConfidence = 0;
         List<Double> speeds = new ArrayList<>();
         
-        for (String[] parts : data) {
-            if (parts[1].equals(horseName)) {
+        try (CsvReader csv = CsvReader.openAppendOnly(RACES_CSV_FILE, true)) {
+            while (csv.next()) {
+                if (!csv.fieldEquals(1, horseName)) continue;
                 totalRaces++;
-                if (Math.round(Double.parseDouble(parts[5])) == 1) wins++;
+                if (Math.round(csv.getDouble(5)) == 1) wins++;
                 
                 double confidence;
                 try {
-                    confidence = Double.parseDouble(parts[3]);
+                    confidence = csv.getDouble(3);
                 } catch (NumberFormatException e) {
                     confidence = 0.5;
                 }
                 totalConfidence += confidence;
                 
-                int distance = Integer.parseInt(parts[4]);
-                long duration = Long.parseLong(parts[6]);
+                int distance = csv.getInt(4);
+                long duration = csv.getLong(6);
                 if (duration != -1) {
                     double speed = (double) distance / (duration / 1000.0);
                     speeds.add(speed);
@@ -405,40 +387,137 @@ public class FileIO {
     public static void storeRaceStats(String raceID, String horseName, double confidence, 
             int distanceTravelled, int position, long raceDuration, String trackName, 
             Track.TrackCondition trackCondition) {
+        // Into the history first, so a first-time import can't pick this row up from races.csv too
+        RaceHistoryStore history = RaceHistoryStore.getInstance();
+        if (history != null) {
+            history.append(horseName, confidence, distanceTravelled, position, raceDuration,
+                trackName, trackCondition);
+        }
         List<String> lines = new ArrayList<>();
-        lines.add(String.format("%s,%s,%c,%.2f,%d,%d,%d,%s,%s",
-            raceID, horseName, horseName.charAt(0), confidence, distanceTravelled, position, 
+        lines.add(formatRaceStats(raceID, horseName, confidence, distanceTravelled, position,
             raceDuration, trackName, trackCondition));
-        
-        Path path = Paths.get(RACES_CSV_FILE);
-        if (!Files.exists(path)) {
-            writeCsvFile(RACES_CSV_FILE, lines, 
-                "raceID,name,symbol,confidence,distanceTravelled,position,time,trackName,trackCondition");
-        } else {
-            try {
-                Files.write(path, lines, StandardOpenOption.APPEND);
-            } catch (IOException e) {
-                System.err.println("Error storing race statistics: " + e.getMessage());
+        RaceStatsAppender.forFile(RACES_CSV_FILE).append(lines);
+    }
+
+    /**
+     * Queues every entry of every result for appending to races.csv. Rows reach the file
+     * in groups through RaceStatsAppender; call flushRaceStats() to wait for them. The rows
+     * also go into RaceHistoryStore.
+     */
+    public static void storeRaceStats(List<RaceResult> results) {
+        RaceHistoryStore history = RaceHistoryStore.getInstance();
+        if (history != null) {
+            history.append(results);
+        }
+        storeRaceStats(results, RACES_CSV_FILE);
+    }
+
+    /**
+     * Same as storeRaceStats(results), but to any file in the races.csv format,
+     * creating it with a header if needed.
+     */
+    public static void storeRaceStats(List<RaceResult> results, String filePath) {
+        List<String> lines = new ArrayList<>();
+        for (RaceResult result : results) {
+            for (RaceResult.Entry entry : result.getEntries()) {
+                lines.add(formatRaceStats(result.getRaceID(), entry.getHorseName(), entry.getConfidence(),
+                    entry.getDistanceTravelled(), entry.getPosition(), entry.getFinishTime(),
+                    result.getTrackName(), result.getTrackCondition()));
             }
         }
+        if (!lines.isEmpty()) {
+            RaceStatsAppender.forFile(filePath).append(lines);
+        }
     }
 
+    /**
+     * Blocks until every race statistics row queued so far is in its file, and in
+     * RaceHistoryStore if that is open.
+     *
+     * @return false if some rows could not be written to their file (the error has been reported)
+     */
+    public static boolean flushRaceStats() {
+        boolean written = RaceStatsAppender.flushAll();
+        RaceHistoryStore.flushIfOpen();
+        return written;
+    }
+
+    private static String formatRaceStats(String raceID, String horseName, double confidence,
+            int distanceTravelled, int position, long raceDuration, String trackName,
+            Track.TrackCondition trackCondition) {
+        return String.format("%s,%s,%c,%.2f,%d,%d,%d,%s,%s",
+            raceID, horseName, horseName.charAt(0), confidence, distanceTravelled, position, 
+            raceDuration, trackName, trackCondition);
+    }
+
+    /**
+     * Saves a recorded race (see models.RaceLog) as replays/<raceID>.log, keeping only
+     * the newest MAX_REPLAYS recordings.
+     */
+    public static boolean saveRaceLog(String raceID, byte[] log) {
+        try {
+            Path path = Paths.get(REPLAYS_DIR, raceID + ".log");
+            Files.createDirectories(path.getParent());
+            Files.write(path, log);
+            pruneRaceLogs();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error saving race log " + raceID + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void pruneRaceLogs() throws IOException {
+        List<Path> logs = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(Paths.get(REPLAYS_DIR), "*.log")) {
+            for (Path log : dir) {
+                logs.add(log);
+            }
+        }
+        if (logs.size() <= MAX_REPLAYS) {
+            return;
+        }
+        Map<Path, Long> modified = new HashMap<>();
+        for (Path log : logs) {
+            modified.put(log, Files.getLastModifiedTime(log).toMillis());
+        }
+        logs.sort(Comparator.comparing(modified::get));
+        for (Path log : logs.subList(0, logs.size() - MAX_REPLAYS)) {
+            Files.deleteIfExists(log);
+        }
+    }
+
+    /**
+     * @return the recorded race with the given ID, or null if there is none
+     */
+    public static byte[] loadRaceLog(String raceID) {
+        Path path = Paths.get(REPLAYS_DIR, raceID + ".log");
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException e) {
+            System.err.println("Error reading race log " + raceID + ": " + e.getMessage());
+            return null;
+        }
+    }
 
     public static Map<String, Object> getBettingStats() {
         Map<String, Object> stats = new HashMap<>();
-        List<String[]> data = readCsvFile(BETS_CSV_FILE, true);
-        
         int totalBets = 0;
         int winningBets = 0;
         double totalBetAmount = 0;
         double totalWinnings = 0;
         
-        for (String[] parts : data) {
-            totalBets++;
-            totalBetAmount += Double.parseDouble(parts[5]);
-            if (Boolean.parseBoolean(parts[6])) {
-                winningBets++;
-                totalWinnings += Double.parseDouble(parts[7]);
+        try (CsvReader csv = CsvReader.open(BETS_CSV_FILE, true)) {
+            while (csv.next()) {
+                totalBets++;
+                totalBetAmount += csv.getDouble(5);
+                if (csv.getBoolean(6)) {
+                    winningBets++;
+                    totalWinnings += csv.getDouble(7);
+                }
             }
         }
         
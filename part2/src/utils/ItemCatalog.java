@@ -0,0 +1,90 @@
+package utils;
+
+import models.HorseItem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * One item catalog file (equipment.csv or accessories.csv), parsed once and indexed by
+ * item name. HorseItem is immutable, so every horse carrying an item shares the catalog's
+ * one instance of it.
+ * <p>
+ * The file is re-parsed only when its modification time or size changes, and those are
+ * looked at no more than once every STAMP_CHECK_MILLIS, so lookups are a hash probe.
+ */
+class ItemCatalog {
+    private static final long STAMP_CHECK_MILLIS = 1_000;
+
+    private final String filePath;
+    private final Function<String, List<HorseItem>> parser;
+
+    private List<HorseItem> items = Collections.emptyList();
+    private Map<String, HorseItem> byName = Collections.emptyMap();
+    private long modified = Long.MIN_VALUE;
+    private long size = -1;
+    private long lastChecked = Long.MIN_VALUE;
+
+    /**
+     * @param parser reads the file into items, in file order
+     */
+    ItemCatalog(String filePath, Function<String, List<HorseItem>> parser) {
+        this.filePath = filePath;
+        this.parser = parser;
+    }
+
+    /**
+     * @return every item in file order; read-only
+     */
+    synchronized List<HorseItem> getItems() {
+        refreshIfChanged();
+        return items;
+    }
+
+    /**
+     * @return items by name; read-only. Hold on to it for a batch of lookups.
+     */
+    synchronized Map<String, HorseItem> getIndex() {
+        refreshIfChanged();
+        return byName;
+    }
+
+    private void refreshIfChanged() {
+        long now = System.currentTimeMillis();
+        if (lastChecked != Long.MIN_VALUE && now - lastChecked < STAMP_CHECK_MILLIS) {
+            return;
+        }
+        lastChecked = now;
+
+        long fileModified = -1;
+        long fileSize = -1;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(Paths.get(filePath), BasicFileAttributes.class);
+            fileModified = attributes.lastModifiedTime().toMillis();
+            fileSize = attributes.size();
+        } catch (IOException e) {
+            // Parsed below anyway, so the reader reports the missing file
+        }
+        if (fileModified == modified && fileSize == size) {
+            return;
+        }
+
+        List<HorseItem> parsed = parser.apply(filePath);
+        Map<String, HorseItem> index = new HashMap<>();
+        for (HorseItem item : parsed) {
+            // First entry wins, as the old linear search did
+            index.putIfAbsent(item.getName(), item);
+        }
+        items = Collections.unmodifiableList(parsed);
+        byName = Collections.unmodifiableMap(index);
+        modified = fileModified;
+        size = fileSize;
+    }
+}
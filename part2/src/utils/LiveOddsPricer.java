@@ -0,0 +1,234 @@
+package utils;
+
+import models.EventRaceKernel;
+import models.Race;
+import models.RaceEvent;
+import models.RaceFrame;
+import models.RaceListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Re-prices a running race on every tick. Each tick's frame is the starting point for as
+ * many event-engine rollouts as fit in the time budget, and the share of rollouts each
+ * lane wins becomes its price.
+ * <p>
+ * All work happens on the pricer's own threads. On the race thread a tick only costs a
+ * flag check and a hand-off, and a tick that arrives while the last one is still being
+ * priced is skipped rather than queued, so a slow pricer never holds the race up or falls
+ * behind it. Pricing stops once a horse is over the line.
+ */
+public class LiveOddsPricer implements RaceListener {
+    private static final int ROLLOUT_BLOCK = 64;
+    private static final double MIN_ODDS = 1.01;
+    private static final double MAX_ODDS = 100.0;
+
+    /**
+     * The prices after one tick, one entry per lane.
+     */
+    public static class Quote {
+        private final int tick;
+        private final int rollouts;
+        private final double[] winProbability;
+
+        private Quote(int tick, int rollouts, double[] winProbability) {
+            this.tick = tick;
+            this.rollouts = rollouts;
+            this.winProbability = winProbability;
+        }
+
+        public int getTick() { return tick; }
+        public int getRollouts() { return rollouts; }
+        public int getLaneCount() { return winProbability.length; }
+        public double getWinProbability(int lane) { return winProbability[lane]; }
+
+        /** @return decimal odds for the lane, or MAX_ODDS if it can no longer win */
+        public double getOdds(int lane) {
+            double p = winProbability[lane];
+            return p <= 0.0 ? MAX_ODDS : Math.max(MIN_ODDS, Math.min(MAX_ODDS, 1.0 / p));
+        }
+    }
+
+    private final Race race;
+    private final long budgetNanos;
+    private final Consumer<Quote> onQuote;
+    private final ExecutorService pool;
+    private final AtomicBoolean pricing = new AtomicBoolean();
+
+    // One kernel, frame and generator per worker; a worker only touches its own
+    private final EventRaceKernel[] kernels;
+    private final RaceFrame[] frames;
+    private final SplittableRandom[] randoms;
+
+    private volatile Quote latest;
+    private volatile boolean closed;
+    // Set once a horse is over the line; the race is decided and no longer priced
+    private volatile boolean settled;
+    private int skippedTicks;
+
+    public LiveOddsPricer(Race race, Consumer<Quote> onQuote) {
+        this(race, Race.TICK_MILLIS / 2, Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+                onQuote);
+    }
+
+    /**
+     * @param race         the race to price; its horses are compiled once, here
+     * @param budgetMillis wall time allowed for pricing each tick
+     * @param workers      threads in the pricer's pool
+     * @param onQuote      called on a pricer thread with each new quote
+     */
+    public LiveOddsPricer(Race race, long budgetMillis, int workers, Consumer<Quote> onQuote) {
+        this.race = race;
+        this.budgetNanos = budgetMillis * 1_000_000L;
+        this.onQuote = onQuote;
+        this.pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "live-odds");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        int laneCount = race.getLanes().length;
+        kernels = new EventRaceKernel[workers];
+        frames = new RaceFrame[workers];
+        randoms = new SplittableRandom[workers];
+        SplittableRandom root = new SplittableRandom();
+        for (int worker = 0; worker < workers; worker++) {
+            kernels[worker] = EventRaceKernel.compile(race.getTrack(), race.getLanes());
+            frames[worker] = new RaceFrame(laneCount);
+            randoms[worker] = root.split();
+        }
+    }
+
+    @Override
+    public void onRaceEvent(RaceEvent event) {
+        if (event.getRace() != race) {
+            return;
+        }
+        if (event.getType() == RaceEvent.Type.RACE_COMPLETE) {
+            close();
+        } else if (event.getType() == RaceEvent.Type.TICK && !closed && !settled) {
+            if (!pricing.compareAndSet(false, true)) {
+                skippedTicks++;
+                return;
+            }
+            try {
+                pool.execute(this::priceTick);
+            } catch (RejectedExecutionException e) {
+                pricing.set(false);
+            }
+        }
+    }
+
+    /**
+     * @return the most recent quote, or null before the first one
+     */
+    public Quote getLatestQuote() {
+        return latest;
+    }
+
+    /**
+     * @return ticks that were not priced because the previous tick was still being priced;
+     *         only meaningful from the race thread
+     */
+    public int getSkippedTicks() {
+        return skippedTicks;
+    }
+
+    /**
+     * Stops pricing and releases the pool. Safe to call more than once.
+     */
+    public void close() {
+        closed = true;
+        pool.shutdownNow();
+    }
+
+    private void priceTick() {
+        try {
+            long deadline = System.nanoTime() + budgetNanos;
+            int workers = kernels.length;
+
+            List<CompletableFuture<long[]>> helpers = new ArrayList<>(workers - 1);
+            for (int worker = 1; worker < workers; worker++) {
+                int w = worker;
+                helpers.add(CompletableFuture.supplyAsync(() -> rollOut(w, deadline), pool));
+            }
+            long[] wins = rollOut(0, deadline);
+            if (wins == null) {
+                return;
+            }
+            for (int worker = 1; worker < workers; worker++) {
+                long[] helperWins = helpers.get(worker - 1).join();
+                // A helper that read a later frame priced a different position; leave it out
+                if (helperWins == null || frames[worker].getTick() != frames[0].getTick()) {
+                    continue;
+                }
+                for (int lane = 0; lane < wins.length; lane++) {
+                    wins[lane] += helperWins[lane];
+                }
+            }
+
+            // The last slot holds the rollout count
+            int laneCount = wins.length - 1;
+            long rollouts = wins[laneCount];
+            if (closed || rollouts == 0) {
+                return;
+            }
+            double[] winProbability = new double[laneCount];
+            for (int lane = 0; lane < laneCount; lane++) {
+                winProbability[lane] = (double) wins[lane] / rollouts;
+            }
+            Quote quote = new Quote(frames[0].getTick(), (int) rollouts, winProbability);
+            latest = quote;
+            onQuote.accept(quote);
+        } catch (RuntimeException e) {
+            // Includes the pool being shut down under a running tick
+            if (!closed) {
+                System.err.println("Error pricing live odds: " + e.getMessage());
+            }
+        } finally {
+            pricing.set(false);
+        }
+    }
+
+    /**
+     * Plays the race out from its latest frame until the deadline.
+     *
+     * @return wins per lane followed by the number of rollouts, or null once a horse has
+     *         finished and the race is no longer priced
+     */
+    private long[] rollOut(int worker, long deadline) {
+        EventRaceKernel kernel = kernels[worker];
+        RaceFrame frame = frames[worker];
+        SplittableRandom random = randoms[worker];
+        race.getFrames().read(frame);
+
+        int laneCount = frame.getLaneCount();
+        for (int lane = 0; lane < laneCount; lane++) {
+            if (frame.hasFinished(lane)) {
+                settled = true;
+                return null;
+            }
+        }
+
+        long[] wins = new long[laneCount + 1];
+        do {
+            for (int i = 0; i < ROLLOUT_BLOCK; i++) {
+                kernel.resetTo(frame);
+                kernel.run(random, Race.MAX_SIMULATED_TICKS);
+                if (kernel.getFinishedCount() > 0) {
+                    wins[kernel.getFinisher(0)]++;
+                }
+            }
+            wins[laneCount] += ROLLOUT_BLOCK;
+        } while (System.nanoTime() < deadline && !closed && !settled);
+        return wins;
+    }
+}
@@ -0,0 +1,225 @@
+package utils;
+
+import models.Horse;
+import models.HorseItem;
+import models.Track;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the equipment loadout that gives a horse the best chance of winning against a
+ * given field on a given track and condition.
+ * <p>
+ * Every subset of the catalog is a candidate, but only its combined speed, endurance and
+ * confidence modifiers matter, so loadouts with the same product are simulated once.
+ * A loadout is dropped without simulating when another has the same confidence modifier
+ * and at least the same speed and endurance: its move chances are no higher at any
+ * distance and its fall chance is the same, so it cannot win more often. The rest are
+ * raced in rounds of growing size, and after each round any loadout whose win rate is
+ * clearly below the leader's (beyond three standard errors of both) is dropped.
+ * <p>
+ * Simulation results are cached per (loadout, field, track), so asking again, or asking
+ * about a field that shares loadouts, only runs the races still missing.
+ */
+public class LoadoutOptimizer {
+    // Total races per surviving loadout after each round
+    private static final int[] ROUND_RUNS = {2_000, 10_000, 40_000};
+    private static final double PRUNE_STANDARD_ERRORS = 3.0;
+
+    private final List<HorseItem> catalog;
+    private final long seed;
+    private final Map<String, SimulationResult> cache = new ConcurrentHashMap<>();
+
+    /**
+     * The outcome of an optimisation: the best loadout found, its estimated win
+     * probability, and how the horse's current loadout compares.
+     */
+    public static class Suggestion {
+        private final List<HorseItem> loadout;
+        private final double winProbability;
+        private final double currentWinProbability;
+        private final int loadoutsConsidered;
+        private final int loadoutsSimulated;
+
+        Suggestion(List<HorseItem> loadout, double winProbability, double currentWinProbability,
+                   int loadoutsConsidered, int loadoutsSimulated) {
+            this.loadout = loadout;
+            this.winProbability = winProbability;
+            this.currentWinProbability = currentWinProbability;
+            this.loadoutsConsidered = loadoutsConsidered;
+            this.loadoutsSimulated = loadoutsSimulated;
+        }
+
+        public List<HorseItem> getLoadout() { return loadout; }
+
+        public double getWinProbability() { return winProbability; }
+
+        public double getCurrentWinProbability() { return currentWinProbability; }
+
+        public int getLoadoutsConsidered() { return loadoutsConsidered; }
+
+        /** @return how many distinct loadouts had to be raced after dominance pruning */
+        public int getLoadoutsSimulated() { return loadoutsSimulated; }
+    }
+
+    private static class Candidate {
+        final List<HorseItem> items;
+        final double speed;
+        final double endurance;
+        final double confidence;
+        SimulationResult result;
+
+        Candidate(List<HorseItem> items) {
+            this.items = items;
+            double speed = 1.0;
+            double endurance = 1.0;
+            double confidence = 1.0;
+            for (HorseItem item : items) {
+                speed *= item.getSpeedModifier();
+                endurance *= item.getEnduranceModifier();
+                confidence *= item.getConfidenceModifier();
+            }
+            this.speed = speed;
+            this.endurance = endurance;
+            this.confidence = confidence;
+        }
+
+        String modifierKey() {
+            return speed + "/" + endurance + "/" + confidence;
+        }
+
+        boolean dominates(Candidate other) {
+            return confidence == other.confidence
+                    && speed >= other.speed && endurance >= other.endurance
+                    && (speed > other.speed || endurance > other.endurance);
+        }
+
+        double winProbability() {
+            return result.getWinProbability(0);
+        }
+
+        double standardError() {
+            double p = winProbability();
+            return Math.sqrt(p * (1.0 - p) / result.getRuns());
+        }
+    }
+
+    public LoadoutOptimizer() {
+        this(DataRepository.getInstance().getEquipment(), 0x10AD0L);
+    }
+
+    public LoadoutOptimizer(List<HorseItem> catalog, long seed) {
+        this.catalog = catalog;
+        this.seed = seed;
+    }
+
+    /**
+     * @param horse the horse to equip; its current equipment is only used for comparison
+     * @param field the other runners, as they are currently equipped
+     * @param track the track; its condition is the one raced on
+     */
+    public Suggestion optimize(Horse horse, Horse[] field, Track track) {
+        if (catalog.size() > 16) {
+            throw new IllegalArgumentException("Catalog of " + catalog.size() + " items is too large to enumerate");
+        }
+        Track raceTrack = new Track(track.getName(), field.length + 1, track.getLength(), track.getShape(),
+                track.getCondition());
+
+        // One candidate per distinct modifier product
+        Map<String, Candidate> distinct = new LinkedHashMap<>();
+        for (int mask = 0; mask < (1 << catalog.size()); mask++) {
+            List<HorseItem> items = new ArrayList<>();
+            for (int i = 0; i < catalog.size(); i++) {
+                if ((mask & (1 << i)) != 0) {
+                    items.add(catalog.get(i));
+                }
+            }
+            Candidate candidate = new Candidate(items);
+            distinct.merge(candidate.modifierKey(), candidate,
+                    (kept, offered) -> offered.items.size() < kept.items.size() ? offered : kept);
+        }
+        int considered = 1 << catalog.size();
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (Candidate candidate : distinct.values()) {
+            boolean dominated = false;
+            for (Candidate other : distinct.values()) {
+                if (other.dominates(candidate)) {
+                    dominated = true;
+                    break;
+                }
+            }
+            if (!dominated) {
+                candidates.add(candidate);
+            }
+        }
+        int simulated = candidates.size();
+
+        String fieldKey = fieldKey(horse, field, raceTrack);
+        for (int runs : ROUND_RUNS) {
+            candidates.parallelStream().forEach(candidate ->
+                    candidate.result = simulate(candidate, horse, field, raceTrack, fieldKey, runs));
+            if (candidates.size() == 1) {
+                break;
+            }
+
+            Candidate leader = candidates.stream().max(Comparator.comparingDouble(Candidate::winProbability)).orElseThrow();
+            double bar = leader.winProbability() - PRUNE_STANDARD_ERRORS * leader.standardError();
+            candidates.removeIf(candidate -> candidate != leader
+                    && candidate.winProbability() + PRUNE_STANDARD_ERRORS * candidate.standardError() < bar);
+        }
+
+        Candidate best = candidates.stream().max(Comparator.comparingDouble(Candidate::winProbability)).orElseThrow();
+        Candidate current = new Candidate(horse.getEquipment());
+        current.result = simulate(current, horse, field, raceTrack, fieldKey, ROUND_RUNS[ROUND_RUNS.length - 1]);
+
+        return new Suggestion(best.items, best.winProbability(), current.winProbability(), considered, simulated);
+    }
+
+    /**
+     * Returns at least runs races of the horse with the candidate loadout in lane 1,
+     * topping up the cached result if it has fewer.
+     */
+    private SimulationResult simulate(Candidate candidate, Horse horse, Horse[] field, Track track,
+                                      String fieldKey, int runs) {
+        String key = candidate.modifierKey() + "|" + fieldKey;
+        SimulationResult cached = cache.get(key);
+        int have = cached == null ? 0 : cached.getRuns();
+        if (have >= runs) {
+            return cached;
+        }
+
+        Horse[] lineup = new Horse[field.length + 1];
+        lineup[0] = new Horse(horse.getSymbol(), horse.getName(), horse.getConfidence(), horse.getBreed(),
+                horse.getCoatColor());
+        for (HorseItem item : candidate.items) {
+            lineup[0].addEquipment(item);
+        }
+        System.arraycopy(field, 0, lineup, 1, field.length);
+
+        // Every loadout sees the same random stream, so they are compared on the same races
+        SimulationResult extra = MonteCarloSimulator.simulate(track, lineup, runs - have, seed + have,
+                MonteCarloSimulator.Engine.EVENT);
+        SimulationResult result = cached == null ? extra : cached.merge(extra);
+        cache.put(key, result);
+        return result;
+    }
+
+    private static String fieldKey(Horse horse, Horse[] field, Track track) {
+        StringBuilder key = new StringBuilder();
+        key.append(track.getLength()).append(',').append(track.getShape()).append(',').append(track.getCondition());
+        key.append('|').append(horse.getConfidence());
+        for (Horse other : field) {
+            key.append('|').append(other.getConfidence())
+                    .append('/').append(other.calculateTotalSpeedModifier())
+                    .append('/').append(other.calculateTotalEnduranceModifier())
+                    .append('/').append(other.calculateTotalConfidenceModifier());
+        }
+        return key.toString();
+    }
+}
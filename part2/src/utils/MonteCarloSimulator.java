@@ -0,0 +1,120 @@
+package utils;
+
+import models.EventRaceKernel;
+import models.Horse;
+import models.ModelParameters;
+import models.Race;
+import models.RaceEngine;
+import models.RaceKernel;
+import models.Track;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Estimates race outcome probabilities by running many headless races in parallel.
+ * Work is cut into fixed-size chunks, each with its own compiled race engine and its
+ * own generator split from the root seed, so results only depend on the seed and not
+ * on how the chunks were scheduled across cores.
+ */
+public class MonteCarloSimulator {
+    private static final int RUNS_PER_CHUNK = 2_000;
+
+    public enum Engine {
+        TICK,   // RaceKernel: one Bernoulli trial per lane per tick
+        EVENT,  // EventRaceKernel: geometric jumps between moves and falls
+        BATCH   // BatchRaceSimulator: blocks of races stepped together without branches
+    }
+
+    public static SimulationResult simulate(Track track, Horse[] lineup, int runs) {
+        return simulate(track, lineup, runs, new SplittableRandom().nextLong());
+    }
+
+    public static SimulationResult simulate(Track track, Horse[] lineup, int runs, long seed) {
+        return simulate(track, lineup, runs, seed, Engine.TICK);
+    }
+
+    /**
+     * @param track  the track layout and condition (lane count is taken from the lineup)
+     * @param lineup the horses, one per lane; they are only read, never modified
+     * @param runs   number of races to simulate
+     * @param seed   root seed; the same seed gives the same result
+     * @param engine which race engine to run; both give the same outcome distribution
+     */
+    public static SimulationResult simulate(Track track, Horse[] lineup, int runs, long seed,
+                                            Engine engine) {
+        return simulate(track, lineup, runs, seed, engine, ModelParameters.DEFAULT);
+    }
+
+    /**
+     * Same as simulate(track, lineup, runs, seed, engine), under the given model constants.
+     */
+    public static SimulationResult simulate(Track track, Horse[] lineup, int runs, long seed,
+                                            Engine engine, ModelParameters parameters) {
+        if (lineup.length == 0 || runs <= 0) {
+            throw new IllegalArgumentException("Need at least one horse and one run");
+        }
+
+        Track raceTrack = new Track(track.getName(), lineup.length, track.getLength(),
+                track.getShape(), track.getCondition());
+
+        int chunks = (runs + RUNS_PER_CHUNK - 1) / RUNS_PER_CHUNK;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] chunkRandoms = new SplittableRandom[chunks];
+        for (int i = 0; i < chunks; i++) {
+            chunkRandoms[i] = root.split();
+        }
+
+        return IntStream.range(0, chunks)
+                .parallel()
+                .mapToObj(i -> {
+                    int chunkRuns = Math.min(RUNS_PER_CHUNK, runs - i * RUNS_PER_CHUNK);
+                    return simulateChunk(raceTrack, lineup, engine, parameters, chunkRuns, chunkRandoms[i]);
+                })
+                .reduce(SimulationResult::merge)
+                .orElseThrow();
+    }
+
+    /**
+     * Runs every race on the calling thread with one generator seeded from seed.
+     * Used for benchmarking engines against each other without pool effects.
+     */
+    static SimulationResult simulateSequential(Track track, Horse[] lineup, int runs, long seed,
+                                               Engine engine) {
+        Track raceTrack = new Track(track.getName(), lineup.length, track.getLength(),
+                track.getShape(), track.getCondition());
+        return simulateChunk(raceTrack, lineup, engine, ModelParameters.DEFAULT, runs,
+                new SplittableRandom(seed));
+    }
+
+    private static SimulationResult simulateChunk(Track track, Horse[] lineup, Engine engine,
+                                                  ModelParameters parameters, int runs,
+                                                  SplittableRandom random) {
+        if (engine == Engine.BATCH) {
+            return BatchRaceSimulator.simulateChunk(track, lineup, parameters, runs, Race.MAX_SIMULATED_TICKS,
+                    random);
+        }
+
+        double[] confidences = new double[lineup.length];
+        for (int lane = 0; lane < lineup.length; lane++) {
+            confidences[lane] = lineup[lane].getConfidence();
+        }
+        RaceEngine kernel = engine == Engine.EVENT
+                ? EventRaceKernel.compile(track, lineup, confidences, parameters)
+                : RaceKernel.compile(track, lineup, confidences, parameters);
+        int[] order = new int[lineup.length];
+
+        SimulationResult result = new SimulationResult(lineup.length);
+        for (int run = 0; run < runs; run++) {
+            kernel.reset();
+            kernel.run(random, Race.MAX_SIMULATED_TICKS);
+            kernel.fillResultOrder(order);
+
+            int finishers = kernel.getFinishedCount();
+            for (int i = 0; i < order.length; i++) {
+                result.record(order[i], i + 1, i < finishers, kernel.hasFallen(order[i]));
+            }
+        }
+        return result.withRuns(runs);
+    }
+}
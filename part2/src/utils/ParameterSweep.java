@@ -0,0 +1,296 @@
+package utils;
+
+import models.Horse;
+import models.ModelParameters;
+import models.Track;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.BiFunction;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Sweeps the race model constants over a grid or random sample of values and measures
+ * each setting with the Monte Carlo simulator, so game balance can be tuned without
+ * editing code.
+ * <p>
+ * Every setting runs the same lineup on the same track under each track condition and
+ * reports the favourite's (highest-confidence horse's) win rate and the average fall
+ * rate. All settings use the same seed, so differences between rows come from the
+ * parameters rather than from sampling noise. Settings are measured in parallel.
+ * <p>
+ * Usage: java -cp ".:src" utils.ParameterSweep [--runs N] [--seed S] [--samples K]
+ * [--track Name] [--horses A;B;C] [PARAMETER=v1,v2,... | PARAMETER=min:max] ...
+ * <br>
+ * Lists of values are crossed into a grid; with --samples, min:max ranges are sampled
+ * uniformly K times instead.
+ */
+public class ParameterSweep {
+    private static final int DEFAULT_RUNS = 20_000;
+
+    public enum Parameter {
+        FALL_PROBABILITY(ModelParameters::withFallProbability, ModelParameters::getFallProbability),
+        MUDDY_SPEED((p, v) -> p.withSpeedModifier(Track.TrackCondition.MUDDY, v),
+                p -> p.getSpeedModifier(Track.TrackCondition.MUDDY)),
+        DRY_SPEED((p, v) -> p.withSpeedModifier(Track.TrackCondition.DRY, v),
+                p -> p.getSpeedModifier(Track.TrackCondition.DRY)),
+        ICY_SPEED((p, v) -> p.withSpeedModifier(Track.TrackCondition.ICY, v),
+                p -> p.getSpeedModifier(Track.TrackCondition.ICY)),
+        MUDDY_FALL_RISK((p, v) -> p.withFallRiskModifier(Track.TrackCondition.MUDDY, v),
+                p -> p.getFallRiskModifier(Track.TrackCondition.MUDDY)),
+        DRY_FALL_RISK((p, v) -> p.withFallRiskModifier(Track.TrackCondition.DRY, v),
+                p -> p.getFallRiskModifier(Track.TrackCondition.DRY)),
+        ICY_FALL_RISK((p, v) -> p.withFallRiskModifier(Track.TrackCondition.ICY, v),
+                p -> p.getFallRiskModifier(Track.TrackCondition.ICY)),
+        FIGURE_EIGHT_ADJUSTMENT(ModelParameters::withFigureEightAdjustment,
+                ModelParameters::getFigureEightAdjustment);
+
+        private final BiFunction<ModelParameters, Double, ModelParameters> setter;
+        private final ToDoubleFunction<ModelParameters> getter;
+
+        Parameter(BiFunction<ModelParameters, Double, ModelParameters> setter,
+                  ToDoubleFunction<ModelParameters> getter) {
+            this.setter = setter;
+            this.getter = getter;
+        }
+
+        public ModelParameters apply(ModelParameters parameters, double value) {
+            return setter.apply(parameters, value);
+        }
+
+        public double get(ModelParameters parameters) {
+            return getter.applyAsDouble(parameters);
+        }
+    }
+
+    /**
+     * The measurements for one setting. Rates are indexed by TrackCondition ordinal.
+     */
+    public static class Point {
+        private final ModelParameters parameters;
+        private final double[] values;
+        private final double[] favouriteWinRate;
+        private final double[] fallRate;
+
+        Point(ModelParameters parameters, double[] values, double[] favouriteWinRate, double[] fallRate) {
+            this.parameters = parameters;
+            this.values = values;
+            this.favouriteWinRate = favouriteWinRate;
+            this.fallRate = fallRate;
+        }
+
+        public ModelParameters getParameters() { return parameters; }
+
+        /** @return the swept values, in the order the parameters were given */
+        public double[] getValues() { return values; }
+
+        public double getFavouriteWinRate(Track.TrackCondition condition) { return favouriteWinRate[condition.ordinal()]; }
+
+        public double getFallRate(Track.TrackCondition condition) { return fallRate[condition.ordinal()]; }
+    }
+
+    /**
+     * @return every combination of the given values, one array per setting, with the
+     * first parameter varying slowest
+     */
+    public static List<double[]> grid(double[][] valuesPerParameter) {
+        List<double[]> settings = new ArrayList<>();
+        settings.add(new double[0]);
+        for (double[] values : valuesPerParameter) {
+            List<double[]> next = new ArrayList<>();
+            for (double[] setting : settings) {
+                for (double value : values) {
+                    double[] extended = Arrays.copyOf(setting, setting.length + 1);
+                    extended[setting.length] = value;
+                    next.add(extended);
+                }
+            }
+            settings = next;
+        }
+        return settings;
+    }
+
+    /**
+     * @return samples settings with each value drawn uniformly from [min[i], max[i]]
+     */
+    public static List<double[]> randomSearch(double[] min, double[] max, int samples, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<double[]> settings = new ArrayList<>();
+        for (int sample = 0; sample < samples; sample++) {
+            double[] setting = new double[min.length];
+            for (int i = 0; i < min.length; i++) {
+                setting[i] = min[i] == max[i] ? min[i] : random.nextDouble(min[i], max[i]);
+            }
+            settings.add(setting);
+        }
+        return settings;
+    }
+
+    /**
+     * Measures every setting, each one a copy of base with the swept parameters changed.
+     *
+     * @return one point per setting, in the same order
+     */
+    public static List<Point> run(ModelParameters base, Parameter[] swept, List<double[]> settings,
+                                  Track track, Horse[] lineup, int runsPerCondition, long seed) {
+        int favourite = 0;
+        for (int lane = 1; lane < lineup.length; lane++) {
+            if (lineup[lane].getConfidence() > lineup[favourite].getConfidence()) {
+                favourite = lane;
+            }
+        }
+        int favouriteLane = favourite;
+
+        return IntStream.range(0, settings.size())
+                .parallel()
+                .mapToObj(i -> {
+                    double[] values = settings.get(i);
+                    ModelParameters parameters = base;
+                    for (int p = 0; p < swept.length; p++) {
+                        parameters = swept[p].apply(parameters, values[p]);
+                    }
+                    return measure(parameters, values, track, lineup, favouriteLane, runsPerCondition, seed);
+                })
+                .toList();
+    }
+
+    private static Point measure(ModelParameters parameters, double[] values, Track track, Horse[] lineup,
+                                 int favourite, int runs, long seed) {
+        Track.TrackCondition[] conditions = Track.TrackCondition.values();
+        double[] favouriteWinRate = new double[conditions.length];
+        double[] fallRate = new double[conditions.length];
+
+        for (Track.TrackCondition condition : conditions) {
+            Track conditionTrack = new Track(track.getName(), lineup.length, track.getLength(), track.getShape(),
+                    condition);
+            // Event engine: low move chances (ICY, swept speeds near zero) cost nothing extra
+            SimulationResult result = MonteCarloSimulator.simulate(conditionTrack, lineup, runs, seed,
+                    MonteCarloSimulator.Engine.EVENT, parameters);
+
+            favouriteWinRate[condition.ordinal()] = result.getWinProbability(favourite);
+            double falls = 0.0;
+            for (int lane = 0; lane < lineup.length; lane++) {
+                falls += result.getFallRate(lane);
+            }
+            fallRate[condition.ordinal()] = falls / lineup.length;
+        }
+        return new Point(parameters, values, favouriteWinRate, fallRate);
+    }
+
+    public static String formatReport(Parameter[] swept, List<Point> points) {
+        StringBuilder s = new StringBuilder();
+        for (Parameter parameter : swept) {
+            s.append(String.format("%-24s", parameter.name()));
+        }
+        for (Track.TrackCondition condition : Track.TrackCondition.values()) {
+            s.append(String.format(" %8s fav%% fall%%", condition));
+        }
+        s.append('\n');
+
+        for (Point point : points) {
+            for (double value : point.getValues()) {
+                s.append(String.format("%-24.4f", value));
+            }
+            for (Track.TrackCondition condition : Track.TrackCondition.values()) {
+                s.append(String.format(" %13.2f %5.2f", 100 * point.getFavouriteWinRate(condition),
+                        100 * point.getFallRate(condition)));
+            }
+            s.append('\n');
+        }
+        return s.toString();
+    }
+
+    public static void main(String[] args) {
+        int runs = DEFAULT_RUNS;
+        long seed = new SplittableRandom().nextLong();
+        int samples = 0;
+        String trackName = null;
+        String horseNames = null;
+        List<Parameter> swept = new ArrayList<>();
+        List<String> specs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--runs" -> runs = Integer.parseInt(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--samples" -> samples = Integer.parseInt(args[++i]);
+                case "--track" -> trackName = args[++i];
+                case "--horses" -> horseNames = args[++i];
+                default -> {
+                    String[] spec = args[i].split("=", 2);
+                    if (spec.length != 2) {
+                        throw new IllegalArgumentException("Expected PARAMETER=values, got " + args[i]);
+                    }
+                    swept.add(Parameter.valueOf(spec[0].toUpperCase()));
+                    specs.add(spec[1]);
+                }
+            }
+        }
+        if (swept.isEmpty()) {
+            swept.add(Parameter.FALL_PROBABILITY);
+            specs.add("0.005,0.01,0.02");
+            swept.add(Parameter.FIGURE_EIGHT_ADJUSTMENT);
+            specs.add("0.5,0.7,0.9");
+        }
+
+        List<Track> tracks = FileIO.loadTracks();
+        Track track = tracks.get(0);
+        for (Track candidate : tracks) {
+            if (candidate.getName().equals(trackName)) {
+                track = candidate;
+            }
+        }
+        Horse[] lineup = selectHorses(FileIO.ingestHorses(), horseNames);
+
+        Parameter[] parameters = swept.toArray(new Parameter[0]);
+        List<double[]> settings;
+        if (samples > 0) {
+            double[] min = new double[parameters.length];
+            double[] max = new double[parameters.length];
+            for (int p = 0; p < parameters.length; p++) {
+                String[] range = specs.get(p).split(":");
+                min[p] = Double.parseDouble(range[0]);
+                max[p] = Double.parseDouble(range[range.length - 1]);
+            }
+            settings = randomSearch(min, max, samples, seed);
+        } else {
+            double[][] values = new double[parameters.length][];
+            for (int p = 0; p < parameters.length; p++) {
+                values[p] = Arrays.stream(specs.get(p).split(",")).mapToDouble(Double::parseDouble).toArray();
+            }
+            settings = grid(values);
+        }
+
+        System.out.println("Sweeping " + settings.size() + " settings on " + track.getName() + " ("
+                + track.getShape() + ") with " + lineup.length + " horses, " + runs
+                + " races per condition, seed " + seed);
+        long start = System.nanoTime();
+        List<Point> points = run(ModelParameters.DEFAULT, parameters, settings, track, lineup, runs, seed);
+        System.out.print(formatReport(parameters, points));
+        System.out.printf("%.2f s%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    private static Horse[] selectHorses(Horse[] horses, String names) {
+        if (names == null) {
+            return horses;
+        }
+        Map<String, Horse> byName = new HashMap<>();
+        for (Horse horse : horses) {
+            byName.put(horse.getName(), horse);
+        }
+        String[] selected = names.split(";");
+        Horse[] lineup = new Horse[selected.length];
+        for (int lane = 0; lane < selected.length; lane++) {
+            lineup[lane] = byName.get(selected[lane].trim());
+            if (lineup[lane] == null) {
+                throw new IllegalArgumentException("Unknown horse " + selected[lane].trim());
+            }
+        }
+        return lineup;
+    }
+}
@@ -0,0 +1,504 @@
+package utils;
+
+import models.RaceResult;
+import models.Track;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Race history in binary columns, one file per column, so statistics are a scan over
+ * memory-mapped primitives instead of a re-parse of races.csv.
+ * <p>
+ * Each row is one horse's line in one race: horse id, track id, position, time,
+ * distance, confidence and track condition, all fixed width. Horse and track names are
+ * interned to ids, kept in horses.dict and tracks.dict one name per line. Rows are
+ * buffered and appended to the columns a block of BLOCK_ROWS at a time (or when read or
+ * flushed), names first, so every id on disk has its name. FileIO.flushRaceStats, which
+ * RaceResultWriter calls for every batch, flushes the store along with races.csv. A block
+ * torn by a crash is cut back to the last complete row when the store is next opened.
+ * <p>
+ * races.csv stays the record of every race; this is a copy laid out for reading, kept in
+ * step by FileIO.storeRaceStats. Each time the app opens the store it is checked against
+ * races.csv: rows it is missing, such as a block lost to a crash, are imported from the
+ * end of races.csv, and if races.csv holds fewer rows than the store covers the store is
+ * rebuilt from it. Run this class to rebuild it from scratch:
+ * java -cp ".:src" utils.RaceHistoryStore [races.csv] [store directory]
+ */
+public class RaceHistoryStore {
+    private static final String DEFAULT_DIR = "src/data/history/";
+    private static final int BLOCK_ROWS = 4_096;
+    // Stored for rows from older races.csv files, which had no track columns
+    private static final int UNKNOWN_TRACK = -1;
+    private static final byte UNKNOWN_CONDITION = -1;
+
+    private static RaceHistoryStore instance;
+    private static boolean openFailed;
+
+    /**
+     * One fixed-width column file: its append channel, the block being filled, and a
+     * read-only mapping of the rows written so far.
+     */
+    private static class Column {
+        final int width;
+        final FileChannel channel;
+        final ByteBuffer block;
+        MappedByteBuffer mapped;
+        long mappedRows = -1;
+
+        Column(Path file, int width) throws IOException {
+            this.width = width;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.block = ByteBuffer.allocate(BLOCK_ROWS * width);
+        }
+
+        long completeRows() throws IOException {
+            return channel.size() / width;
+        }
+
+        void writeBlock(long rows) throws IOException {
+            block.flip();
+            long position = rows * width;
+            while (block.hasRemaining()) {
+                position += channel.write(block, position);
+            }
+            block.clear();
+        }
+
+        MappedByteBuffer map(long rows) throws IOException {
+            if (rows * width > Integer.MAX_VALUE) {
+                throw new IOException("column is larger than 2 GB");
+            }
+            if (mappedRows != rows) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, rows * width);
+                mappedRows = rows;
+            }
+            return mapped;
+        }
+    }
+
+    /**
+     * Names interned to ids in order of first appearance, backed by a one-name-per-line file.
+     */
+    private static class Dictionary {
+        final Path file;
+        final Map<String, Integer> ids = new HashMap<>();
+        final List<String> names = new ArrayList<>();
+        int written;
+
+        Dictionary(Path file) throws IOException {
+            this.file = file;
+            if (Files.exists(file)) {
+                for (String name : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    ids.putIfAbsent(name, names.size());
+                    names.add(name);
+                }
+            }
+            written = names.size();
+        }
+
+        int intern(String name) {
+            Integer id = ids.get(name);
+            if (id == null) {
+                id = names.size();
+                ids.put(name, id);
+                names.add(name);
+            }
+            return id;
+        }
+
+        /**
+         * @return the name's id, or -1 if it has never been stored
+         */
+        int idOf(String name) {
+            return ids.getOrDefault(name, -1);
+        }
+
+        void clear() throws IOException {
+            ids.clear();
+            names.clear();
+            written = 0;
+            Files.deleteIfExists(file);
+        }
+
+        void writeNew() throws IOException {
+            if (written == names.size()) {
+                return;
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (String name : names.subList(written, names.size())) {
+                    writer.write(name);
+                    writer.newLine();
+                }
+            }
+            written = names.size();
+        }
+    }
+
+    private final Dictionary horses;
+    private final Dictionary tracks;
+    private final Column horseColumn;
+    private final Column trackColumn;
+    private final Column positionColumn;
+    private final Column timeColumn;
+    private final Column distanceColumn;
+    private final Column confidenceColumn;
+    private final Column conditionColumn;
+    private final Column[] columns;
+
+    private final Path skippedFile;
+    // Rows in the column files, and rows in the blocks not yet written
+    private long rows;
+    private int pendingRows;
+    // Malformed races.csv rows passed over by imports, so the store still lines up with the file
+    private long skippedRows;
+
+    private RaceHistoryStore(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        skippedFile = dir.resolve("skipped.count");
+        if (Files.exists(skippedFile)) {
+            try {
+                skippedRows = Long.parseLong(Files.readString(skippedFile).trim());
+            } catch (NumberFormatException e) {
+                // Counted again when the store is found out of step with races.csv
+                skippedRows = 0;
+            }
+        }
+        horses = new Dictionary(dir.resolve("horses.dict"));
+        tracks = new Dictionary(dir.resolve("tracks.dict"));
+        horseColumn = new Column(dir.resolve("horse.col"), Integer.BYTES);
+        trackColumn = new Column(dir.resolve("track.col"), Integer.BYTES);
+        positionColumn = new Column(dir.resolve("position.col"), Integer.BYTES);
+        timeColumn = new Column(dir.resolve("time.col"), Long.BYTES);
+        distanceColumn = new Column(dir.resolve("distance.col"), Integer.BYTES);
+        confidenceColumn = new Column(dir.resolve("confidence.col"), Double.BYTES);
+        conditionColumn = new Column(dir.resolve("condition.col"), Byte.BYTES);
+        columns = new Column[] {horseColumn, trackColumn, positionColumn, timeColumn,
+                distanceColumn, confidenceColumn, conditionColumn};
+
+        rows = Long.MAX_VALUE;
+        for (Column column : columns) {
+            rows = Math.min(rows, column.completeRows());
+        }
+        // Drop the rest of any block that was only partly written
+        for (Column column : columns) {
+            if (column.channel.size() > rows * column.width) {
+                column.channel.truncate(rows * column.width);
+            }
+        }
+    }
+
+    /**
+     * Opens a store in dir, creating it empty if needed. Used by the importer and tests;
+     * the app shares getInstance().
+     */
+    static RaceHistoryStore open(String dir) throws IOException {
+        return new RaceHistoryStore(Paths.get(dir));
+    }
+
+    /**
+     * Returns the app's store, opening it on first use and bringing it up to date with
+     * races.csv.
+     *
+     * @return the store, or null if it can't be opened (the error has been reported)
+     */
+    public static synchronized RaceHistoryStore getInstance() {
+        if (instance == null && !openFailed) {
+            try {
+                RaceHistoryStore store = open(DEFAULT_DIR);
+                if (Files.exists(Paths.get(FileIO.RACES_CSV_FILE))) {
+                    // Rows still queued for races.csv belong in the comparison too
+                    FileIO.flushRaceStats();
+                    store.catchUp(FileIO.RACES_CSV_FILE);
+                }
+                instance = store;
+            } catch (IOException e) {
+                System.err.println("Error opening race history: " + e.getMessage());
+                openFailed = true;
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Writes out the app's store if it has been opened; FileIO.flushRaceStats calls this.
+     */
+    static void flushIfOpen() {
+        RaceHistoryStore store;
+        synchronized (RaceHistoryStore.class) {
+            store = instance;
+        }
+        if (store != null) {
+            store.flush();
+        }
+    }
+
+    /**
+     * Imports the rows of a races.csv-format file that the store doesn't cover yet, or
+     * rebuilds the store from it if the file has fewer rows than the store covers (it was
+     * replaced or cut short).
+     */
+    synchronized void catchUp(String csvPath) throws IOException {
+        flush();
+        long csvRows = 0;
+        try (CsvReader csv = CsvReader.openAppendOnly(csvPath, true)) {
+            while (csv.next()) {
+                csvRows++;
+            }
+        }
+        long covered = rows + skippedRows;
+        if (csvRows == covered) {
+            return;
+        }
+        if (csvRows < covered) {
+            clear();
+            covered = 0;
+        }
+        importCsv(csvPath, covered);
+    }
+
+    /**
+     * Appends every row of a races.csv-format file.
+     *
+     * @return the number of rows imported
+     */
+    public int importCsv(String csvPath) {
+        return importCsv(csvPath, 0);
+    }
+
+    /**
+     * Appends the rows of a races.csv-format file after the first skip.
+     *
+     * @return the number of rows imported
+     */
+    synchronized int importCsv(String csvPath, long skip) {
+        int imported = 0;
+        long skippedBefore = skippedRows;
+        try (CsvReader csv = CsvReader.openAppendOnly(csvPath, true)) {
+            for (long row = 0; row < skip && csv.next(); row++) {
+                // Already in the store
+            }
+            while (csv.next()) {
+                try {
+                    double confidence;
+                    try {
+                        confidence = csv.getDouble(3);
+                    } catch (NumberFormatException e) {
+                        confidence = 0.5;
+                    }
+                    int distance = csv.getInt(4);
+                    int position = (int) Math.round(csv.getDouble(5));
+                    long time = csv.getLong(6);
+                    String trackName = csv.getFieldCount() > 7 && !csv.isEmpty(7) ? csv.getString(7) : null;
+                    Track.TrackCondition condition = null;
+                    if (csv.getFieldCount() > 8) {
+                        try {
+                            condition = Track.TrackCondition.valueOf(csv.getString(8));
+                        } catch (IllegalArgumentException e) {
+                            // Stored as unknown
+                        }
+                    }
+                    append(csv.getString(1), confidence, distance, position, time, trackName, condition);
+                    imported++;
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    System.err.println("Skipping malformed row in " + csvPath + ": "
+                            + String.join(",", csv.getFields()));
+                    skippedRows++;
+                }
+            }
+        }
+        flush();
+        if (skippedRows != skippedBefore) {
+            try {
+                Files.writeString(skippedFile, Long.toString(skippedRows));
+            } catch (IOException e) {
+                System.err.println("Error writing race history: " + e.getMessage());
+            }
+        }
+        return imported;
+    }
+
+    /**
+     * Empties the store, ready to be rebuilt.
+     */
+    synchronized void clear() throws IOException {
+        pendingRows = 0;
+        for (Column column : columns) {
+            column.block.clear();
+            column.mapped = null;
+            column.mappedRows = -1;
+            column.channel.truncate(0);
+        }
+        horses.clear();
+        tracks.clear();
+        rows = 0;
+        skippedRows = 0;
+        Files.deleteIfExists(skippedFile);
+    }
+
+    /**
+     * Buffers every entry of every result; see storeRaceStats in FileIO. Confidence is
+     * kept as races.csv holds it, to two decimals, so a race reads the same whether it
+     * was appended here or imported from the file by catchUp.
+     */
+    public synchronized void append(List<RaceResult> results) {
+        for (RaceResult result : results) {
+            for (RaceResult.Entry entry : result.getEntries()) {
+                append(entry.getHorseName(), asInCsv(entry.getConfidence()), entry.getDistanceTravelled(),
+                        entry.getPosition(), entry.getFinishTime(), result.getTrackName(),
+                        result.getTrackCondition());
+            }
+        }
+    }
+
+    /**
+     * Buffers one row, writing out the block once it is full.
+     *
+     * @param time finish time in milliseconds, or -1 if the horse didn't finish
+     * @param trackName null if unknown
+     * @param condition null if unknown
+     */
+    public synchronized void append(String horseName, double confidence, int distance, int position,
+                                    long time, String trackName, Track.TrackCondition condition) {
+        horseColumn.block.putInt(horses.intern(horseName));
+        trackColumn.block.putInt(trackName == null ? UNKNOWN_TRACK : tracks.intern(trackName));
+        positionColumn.block.putInt(position);
+        timeColumn.block.putLong(time);
+        distanceColumn.block.putInt(distance);
+        confidenceColumn.block.putDouble(confidence);
+        conditionColumn.block.put(condition == null ? UNKNOWN_CONDITION : (byte) condition.ordinal());
+        if (++pendingRows == BLOCK_ROWS) {
+            flush();
+        }
+    }
+
+    // FileIO.formatRaceStats writes confidence with %.2f
+    private static double asInCsv(double confidence) {
+        return Double.parseDouble(String.format(Locale.ROOT, "%.2f", confidence));
+    }
+
+    /**
+     * Writes the rows buffered so far to the column files.
+     */
+    public synchronized void flush() {
+        if (pendingRows == 0) {
+            return;
+        }
+        try {
+            horses.writeNew();
+            tracks.writeNew();
+            for (Column column : columns) {
+                column.writeBlock(rows);
+            }
+            rows += pendingRows;
+        } catch (IOException e) {
+            System.err.println("Error writing race history (rebuild it with utils.RaceHistoryStore): "
+                    + e.getMessage());
+            for (Column column : columns) {
+                column.block.clear();
+            }
+        }
+        pendingRows = 0;
+    }
+
+    /**
+     * @return rows stored, including any not yet written
+     */
+    public synchronized long getRowCount() {
+        return rows + pendingRows;
+    }
+
+    /**
+     * Same statistics, under the same keys, as FileIO.getHorseStats computed from races.csv.
+     *
+     * @return an empty map if the horse has never raced
+     */
+    public synchronized Map<String, Object> getHorseStats(String horseName) {
+        Map<String, Object> stats = new HashMap<>();
+        int horse = horses.idOf(horseName);
+        if (horse < 0) {
+            return stats;
+        }
+        flush();
+        if (rows == 0) {
+            return stats;
+        }
+
+        int totalRaces = 0;
+        int wins = 0;
+        double totalConfidence = 0;
+        int timedRaces = 0;
+        double totalSpeed = 0;
+        double bestSpeed = Double.NEGATIVE_INFINITY;
+        double worstSpeed = Double.POSITIVE_INFINITY;
+        try {
+            MappedByteBuffer horseIds = horseColumn.map(rows);
+            MappedByteBuffer positions = positionColumn.map(rows);
+            MappedByteBuffer confidences = confidenceColumn.map(rows);
+            MappedByteBuffer distances = distanceColumn.map(rows);
+            MappedByteBuffer times = timeColumn.map(rows);
+
+            for (int row = 0; row < rows; row++) {
+                if (horseIds.getInt(row * Integer.BYTES) != horse) {
+                    continue;
+                }
+                totalRaces++;
+                if (positions.getInt(row * Integer.BYTES) == 1) wins++;
+                totalConfidence += confidences.getDouble(row * Double.BYTES);
+
+                long duration = times.getLong(row * Long.BYTES);
+                if (duration != -1) {
+                    double speed = distances.getInt(row * Integer.BYTES) / (duration / 1000.0);
+                    timedRaces++;
+                    totalSpeed += speed;
+                    bestSpeed = Math.max(bestSpeed, speed);
+                    worstSpeed = Math.min(worstSpeed, speed);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading race history: " + e.getMessage());
+            return stats;
+        }
+
+        if (totalRaces > 0) {
+            stats.put("totalRaces", totalRaces);
+            stats.put("wins", wins);
+            stats.put("winRate", (double) wins / totalRaces * 100);
+            stats.put("avgConfidence", totalConfidence / totalRaces);
+            stats.put("avgSpeed", timedRaces > 0 ? totalSpeed / timedRaces : 0.0);
+            stats.put("bestSpeed", timedRaces > 0 ? bestSpeed : 0.0);
+            stats.put("worstSpeed", timedRaces > 0 ? worstSpeed : 0.0);
+        }
+        return stats;
+    }
+
+    /**
+     * Rebuilds a store from races.csv, replacing whatever it held.
+     */
+    public static void main(String[] args) throws IOException {
+        String csvPath = args.length > 0 ? args[0] : FileIO.RACES_CSV_FILE;
+        String dir = args.length > 1 ? args[1] : DEFAULT_DIR;
+
+        long start = System.nanoTime();
+        RaceHistoryStore store = open(dir);
+        store.clear();
+        int imported = store.importCsv(csvPath);
+        System.out.printf("Imported %,d rows from %s into %s in %.0f ms%n", imported, csvPath, dir,
+                (System.nanoTime() - start) / 1e6);
+    }
+}
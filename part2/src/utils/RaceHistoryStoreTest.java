@@ -0,0 +1,216 @@
+package utils;
+
+import models.RaceResult;
+import models.Track;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Checks RaceHistoryStore against races.csv: horse statistics from an imported store must
+ * equal those worked out from the text the way FileIO.getHorseStats always has, after a
+ * reopen, after further appends, after a torn block is cut back, and after catching up
+ * with a races.csv that has rows the store lost or fewer rows than it. A race appended
+ * live must read the same as one imported from its races.csv rows. Also times a
+ * statistics lookup over a large history.
+ */
+public class RaceHistoryStoreTest {
+    private static final String[] HORSES = {"Thunder", "Lightning", "Tornado", "Blizzard", "Storm"};
+    private static final int ROWS = 2_000_000;
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("race-history");
+        Path csv = dir.resolve("races.csv");
+        writeCsv(csv, ROWS, new SplittableRandom(1L));
+
+        boolean allPassed = true;
+
+        long start = System.nanoTime();
+        RaceHistoryStore store = RaceHistoryStore.open(dir.resolve("store").toString());
+        int imported = store.importCsv(csv.toString());
+        System.out.printf("Test 1: imported %,d rows in %.0f ms%n", imported, (System.nanoTime() - start) / 1e6);
+        allPassed &= check(imported == ROWS, "every row imported");
+        allPassed &= compareAll(store, csv);
+
+        System.out.println("Test 2: reopen");
+        store = RaceHistoryStore.open(dir.resolve("store").toString());
+        allPassed &= check(store.getRowCount() == ROWS, "rows survive a reopen");
+        allPassed &= compareAll(store, csv);
+
+        System.out.println("Test 3: append after reopen");
+        List<String> extra = new ArrayList<>();
+        store.append("Thunder", 0.75, 20, 1, 1500, "Oval", Track.TrackCondition.MUDDY);
+        extra.add("id,Thunder,T,0.75,20,1,1500,Oval,MUDDY");
+        store.append("Newcomer", 0.4, 12, 3, -1, "Oval", Track.TrackCondition.DRY);
+        extra.add("id,Newcomer,N,0.40,12,3,-1,Oval,DRY");
+        Files.write(csv, extra, StandardOpenOption.APPEND);
+        allPassed &= compareAll(store, csv);
+        allPassed &= compare(store, csv, "Newcomer");
+
+        System.out.println("Test 4: torn block");
+        store.flush();
+        // As if the app died part way through writing a block: one column is ahead
+        try (FileChannel channel = FileChannel.open(dir.resolve("store/time.col"), StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(Long.BYTES * 3));
+        }
+        store = RaceHistoryStore.open(dir.resolve("store").toString());
+        allPassed &= check(store.getRowCount() == ROWS + 2, "torn rows dropped");
+        allPassed &= compareAll(store, csv);
+
+        System.out.println("Test 5: unknown horse");
+        allPassed &= check(store.getHorseStats("Nobody").isEmpty(), "no statistics");
+
+        System.out.println("Test 6: catch up after rows were lost");
+        // Rows that reached races.csv but not the store, as after a crash before a flush
+        extra.clear();
+        extra.add("id,Storm,S,0.55,18,2,2100,Oval,ICY");
+        extra.add("id,broken,row");
+        extra.add("id,Thunder,T,0.60,20,1,1400,Oval,DRY");
+        Files.write(csv, extra, StandardOpenOption.APPEND);
+        store.append("Storm", 0.55, 18, 2, 2100, "Oval", Track.TrackCondition.ICY);
+        store = RaceHistoryStore.open(dir.resolve("store").toString());
+        store.catchUp(csv.toString());
+        allPassed &= check(store.getRowCount() == ROWS + 4, "missing rows imported, malformed row passed over");
+        allPassed &= compareAll(store, csv);
+        store = RaceHistoryStore.open(dir.resolve("store").toString());
+        store.catchUp(csv.toString());
+        allPassed &= check(store.getRowCount() == ROWS + 4, "nothing imported twice on the next open");
+
+        System.out.println("Test 7: rebuild when races.csv is shorter");
+        Path shorter = dir.resolve("shorter.csv");
+        writeCsv(shorter, 1_000, new SplittableRandom(2L));
+        store.catchUp(shorter.toString());
+        allPassed &= check(store.getRowCount() == 1_000, "store rebuilt");
+        allPassed &= compareAll(store, shorter);
+
+        System.out.println("Test 8: live append reads as imported");
+        List<RaceResult> results = List.of(new RaceResult("live", "Oval", Track.TrackCondition.DRY, List.of(
+                new RaceResult.Entry("Thunder", 'T', 0.456789, 0.5, 20, 1, 1500),
+                new RaceResult.Entry("Storm", 'S', 0.333333, 0.3, 12, 2, -1)), "Thunder", 1500));
+        RaceHistoryStore live = RaceHistoryStore.open(dir.resolve("live").toString());
+        live.append(results);
+        Path liveCsv = dir.resolve("live.csv");
+        FileIO.storeRaceStats(results, liveCsv.toString());
+        FileIO.flushRaceStats();
+        RaceHistoryStore fromCsv = RaceHistoryStore.open(dir.resolve("fromCsv").toString());
+        fromCsv.catchUp(liveCsv.toString());
+        for (String horse : new String[] {"Thunder", "Storm"}) {
+            allPassed &= check(live.getHorseStats(horse).equals(fromCsv.getHorseStats(horse)),
+                    horse + " " + live.getHorseStats(horse).get("avgConfidence") + " both ways");
+        }
+
+        System.out.println();
+        System.out.println("Race history matches races.csv: " + allPassed + " (Expected: true)");
+    }
+
+    private static void writeCsv(Path csv, int rows, SplittableRandom random) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(csv)) {
+            writer.write("raceID,name,symbol,confidence,distanceTravelled,position,time,trackName,trackCondition");
+            writer.newLine();
+            for (int row = 0; row < rows; row++) {
+                String horse = HORSES[random.nextInt(HORSES.length)];
+                long time = random.nextInt(10) == 0 ? -1 : 800 + random.nextInt(3000);
+                String line = String.format("r%d,%s,%c,%.2f,%d,%d,%d", row / 4, horse, horse.charAt(0),
+                        random.nextDouble(), 5 + random.nextInt(30), 1 + random.nextInt(4), time);
+                // Older files stop before the track columns
+                if (row % 3 != 0) {
+                    Track.TrackCondition[] conditions = Track.TrackCondition.values();
+                    line += ",Oval," + conditions[random.nextInt(conditions.length)];
+                }
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+    }
+
+    private static boolean compareAll(RaceHistoryStore store, Path csv) {
+        boolean passed = true;
+        for (String horse : HORSES) {
+            passed &= compare(store, csv, horse);
+        }
+        return passed;
+    }
+
+    private static boolean compare(RaceHistoryStore store, Path csv, String horse) {
+        long start = System.nanoTime();
+        Map<String, Object> stored = store.getHorseStats(horse);
+        long storedNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        Map<String, Object> parsed = statsFromCsv(csv, horse);
+        long parsedNanos = System.nanoTime() - start;
+
+        boolean passed = stored.keySet().equals(parsed.keySet());
+        for (String key : parsed.keySet()) {
+            Object a = stored.get(key);
+            Object b = parsed.get(key);
+            if (a instanceof Double && b instanceof Double) {
+                passed &= Math.abs((Double) a - (Double) b) <= 1e-9 * Math.max(1.0, Math.abs((Double) b));
+            } else {
+                passed &= b.equals(a);
+            }
+        }
+        System.out.printf("  %-10s %s races: store %.1f ms, races.csv %.0f ms -> %s%n", horse,
+                parsed.getOrDefault("totalRaces", 0), storedNanos / 1e6, parsedNanos / 1e6,
+                passed ? "PASS" : "FAIL " + stored + " vs " + parsed);
+        return passed;
+    }
+
+    // FileIO.getHorseStats's reading of races.csv, on plain text lines
+    private static Map<String, Object> statsFromCsv(Path csv, String horseName) {
+        Map<String, Object> stats = new HashMap<>();
+        int totalRaces = 0;
+        int wins = 0;
+        double totalConfidence = 0;
+        List<Double> speeds = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(csv)) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (parts[1].equals(horseName)) {
+                    totalRaces++;
+                    if (Math.round(Double.parseDouble(parts[5])) == 1) wins++;
+                    totalConfidence += Double.parseDouble(parts[3]);
+                    int distance = Integer.parseInt(parts[4]);
+                    long duration = Long.parseLong(parts[6]);
+                    if (duration != -1) {
+                        speeds.add((double) distance / (duration / 1000.0));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (totalRaces > 0) {
+            stats.put("totalRaces", totalRaces);
+            stats.put("wins", wins);
+            stats.put("winRate", (double) wins / totalRaces * 100);
+            stats.put("avgConfidence", totalConfidence / totalRaces);
+            stats.put("avgSpeed", speeds.stream().mapToDouble(Double::doubleValue).average().orElse(0));
+            stats.put("bestSpeed", speeds.stream().mapToDouble(Double::doubleValue).max().orElse(0));
+            stats.put("worstSpeed", speeds.stream().mapToDouble(Double::doubleValue).min().orElse(0));
+        }
+        return stats;
+    }
+
+    private static boolean check(boolean condition, String what) {
+        System.out.println("  " + what + " -> " + (condition ? "PASS" : "FAIL"));
+        return condition;
+    }
+}
@@ -0,0 +1,118 @@
+package utils;
+
+import models.RaceResult;
+import models.RaceStatistics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Writes finished races to disk on a background thread, so the race thread and the
+ * results dialog never wait on file I/O.
+ * <p>
+ * Results that queue up while a write is in progress are written together: one append to
+ * races.csv, then one pass over DataRepository setting every horse's latest confidence and
+ * the track records, and one save of horses.csv and tracks.csv.
+ * Results are written in the order they were submitted.
+ */
+public class RaceResultWriter {
+    private static final RaceResultWriter INSTANCE = new RaceResultWriter();
+
+    private static class Pending {
+        final RaceResult result;
+        final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        Pending(RaceResult result) {
+            this.result = result;
+        }
+    }
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private volatile CompletableFuture<Void> lastWrite = CompletableFuture.completedFuture(null);
+
+    private RaceResultWriter() {
+        Thread worker = new Thread(this::drain, "race-result-writer");
+        worker.setDaemon(true);
+        worker.start();
+        // Don't lose results queued just before the app exits
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush));
+    }
+
+    public static RaceResultWriter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queues a result for writing.
+     *
+     * @return completes once the result is on disk
+     */
+    public synchronized CompletableFuture<Void> submit(RaceResult result) {
+        Pending pending = new Pending(result);
+        lastWrite = pending.written;
+        queue.add(pending);
+        return pending.written;
+    }
+
+    /**
+     * Blocks until every result submitted so far has been written.
+     */
+    public void flush() {
+        lastWrite.handle((ignored, error) -> null).join();
+    }
+
+    private void drain() {
+        List<Pending> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+
+            try {
+                write(batch);
+                for (Pending pending : batch) {
+                    pending.written.complete(null);
+                }
+            } catch (Throwable e) {
+                // Errors too: the thread must live on and every waiting flush must be released
+                System.err.println("Error writing race results: " + e);
+                for (Pending pending : batch) {
+                    pending.written.completeExceptionally(e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        List<RaceResult> results = new ArrayList<>(batch.size());
+        // Later races overwrite earlier ones, so each horse ends with its latest confidence
+        Map<String, Double> confidences = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            results.add(pending.result);
+            for (RaceResult.Entry entry : pending.result.getEntries()) {
+                confidences.put(FileIO.horseKey(entry.getHorseName(), entry.getSymbol()), entry.getNewConfidence());
+            }
+        }
+
+        FileIO.storeRaceStats(results);
+        // Results count as written once their rows are in races.csv
+        boolean statsWritten = FileIO.flushRaceStats();
+        // horses.csv is only written by the repository, so no other save can undo these
+        DataRepository repository = DataRepository.getInstance();
+        repository.updateConfidences(confidences);
+        RaceStatistics.updateTrackRecords(results);
+        repository.flush();
+        if (!statsWritten) {
+            throw new IllegalStateException("race statistics could not be written to races.csv");
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends rows to one races.csv-format file through a single long-lived writer with group
+ * commit. Callers only queue rows; a background thread writes them to the open file and
+ * flushes once per group of GROUP_ROWS rows or every GROUP_MILLIS, whichever comes first,
+ * instead of opening, appending to and closing the file for every row.
+ * <p>
+ * The queue is bounded, so producers that outrun the disk wait rather than filling memory.
+ * A group that fails to write is cut back out of the file and retried on a reopened
+ * writer; if it still fails it is dropped, and flush() reports that. Everything queued is
+ * flushed and the files closed when the app exits. The rows written in each second are
+ * counted and, if enabled, printed as throughput.
+ */
+public class RaceStatsAppender {
+    private static final int QUEUE_CAPACITY = 65_536;
+    private static final int GROUP_ROWS = 1_024;
+    private static final long GROUP_MILLIS = 200;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    private static final int WRITE_ATTEMPTS = 3;
+    private static final long RETRY_MILLIS = 100;
+    private static final String HEADER =
+            "raceID,name,symbol,confidence,distanceTravelled,position,time,trackName,trackCondition";
+    // Queued by flush(); identity-compared, so no real row can be mistaken for it
+    private static final String FLUSH_MARKER = new String("flush");
+
+    private static final Map<Path, RaceStatsAppender> appenders = new HashMap<>();
+
+    static {
+        try {
+            // Don't lose rows queued just before the app exits
+            Runtime.getRuntime().addShutdownHook(new Thread(RaceStatsAppender::closeAll));
+        } catch (IllegalStateException e) {
+            // First used while the app is already exiting (by RaceResultWriter's own hook);
+            // that caller flushes what it queues, and the files are closed with the process
+        }
+    }
+
+    private final Path path;
+    private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    // Held while the file is open or being written, so the shutdown hook can close it
+    private final Object writeLock = new Object();
+    private FileChannel channel;
+    private BufferedWriter writer;
+    // File length before a group that failed to write, so its part-written rows can be cut
+    private long cleanLength = -1;
+
+    // Rows queued, rows written or dropped, and how many had been when the last dropped
+    // group was; guarded by this. Rows are written in queue order, so these are positions
+    private long queued;
+    private long settled;
+    private long droppedThrough;
+
+    private volatile boolean reportThroughput;
+    private volatile long rowsLastSecond;
+    private long rowsThisSecond;
+    private long secondStart = System.nanoTime();
+
+    private RaceStatsAppender(Path path) {
+        this.path = path;
+        Thread worker = new Thread(this::drain, "race-stats-appender");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * @return the appender for filePath, started on first use; one per file
+     */
+    public static synchronized RaceStatsAppender forFile(String filePath) {
+        Path path = Paths.get(filePath).toAbsolutePath().normalize();
+        RaceStatsAppender appender = appenders.get(path);
+        if (appender == null) {
+            appender = new RaceStatsAppender(path);
+            appenders.put(path, appender);
+        }
+        return appender;
+    }
+
+    /**
+     * Blocks until every row queued so far, to any file, has been written.
+     *
+     * @return false if some of them could not be (the error has been reported)
+     */
+    public static boolean flushAll() {
+        boolean written = true;
+        for (RaceStatsAppender appender : all()) {
+            written &= appender.flush();
+        }
+        return written;
+    }
+
+    private static void closeAll() {
+        for (RaceStatsAppender appender : all()) {
+            appender.flush();
+            appender.close();
+        }
+    }
+
+    private static synchronized List<RaceStatsAppender> all() {
+        return new ArrayList<>(appenders.values());
+    }
+
+    /**
+     * Queues rows for appending, waiting for room if the queue is full.
+     */
+    public void append(List<String> rows) {
+        int put = 0;
+        try {
+            for (String row : rows) {
+                queue.put(row);
+                synchronized (this) {
+                    queued++;
+                }
+                put++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while queueing race statistics for " + path + "; "
+                    + (rows.size() - put) + " rows not stored");
+        }
+    }
+
+    /**
+     * Blocks until every row queued so far has been written to the file.
+     *
+     * @return false if any of the rows it waited for could not be written, or the wait
+     *         was interrupted
+     */
+    public boolean flush() {
+        long start;
+        long target;
+        synchronized (this) {
+            start = settled;
+            target = queued;
+            if (settled >= target) {
+                return true;
+            }
+        }
+        try {
+            queue.put(FLUSH_MARKER);
+            synchronized (this) {
+                while (settled < target) {
+                    wait();
+                }
+                return droppedThrough <= start;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Closes the file. Rows queued later open it again.
+     */
+    public void close() {
+        synchronized (writeLock) {
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Prints rows written per second to standard output while rows are being written.
+     */
+    public void setReportThroughput(boolean reportThroughput) {
+        this.reportThroughput = reportThroughput;
+    }
+
+    /**
+     * @return rows written per second, measured over the last window of a second or more
+     */
+    public long getRowsPerSecond() {
+        return rowsLastSecond;
+    }
+
+    private void drain() {
+        List<String> group = new ArrayList<>(GROUP_ROWS);
+        while (true) {
+            try {
+                String first = queue.take();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(GROUP_MILLIS);
+                String row = first;
+                // Gather a group: stop at GROUP_ROWS rows, GROUP_MILLIS, or an explicit flush
+                while (row != FLUSH_MARKER) {
+                    group.add(row);
+                    if (group.size() >= GROUP_ROWS) {
+                        break;
+                    }
+                    row = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (row == null) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (!group.isEmpty()) {
+                commit(group);
+                group.clear();
+            }
+        }
+    }
+
+    private void commit(List<String> group) {
+        boolean written = write(group);
+        countThroughput(written ? group.size() : 0);
+        synchronized (this) {
+            settled += group.size();
+            if (!written) {
+                droppedThrough = settled;
+            }
+            notifyAll();
+        }
+    }
+
+    private boolean write(List<String> group) {
+        synchronized (writeLock) {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    open();
+                    // Anything past here on a failed attempt is this group's, to be cut
+                    cleanLength = channel.size();
+                    for (String row : group) {
+                        writer.write(row);
+                        writer.newLine();
+                    }
+                    writer.flush();
+                    cleanLength = -1;
+                    return true;
+                } catch (IOException e) {
+                    System.err.println("Error storing race statistics (attempt " + attempt + " of "
+                            + WRITE_ATTEMPTS + "): " + e.getMessage());
+                    // Reopen rather than keep writing to a broken stream
+                    closeQuietly();
+                }
+                if (attempt == WRITE_ATTEMPTS) {
+                    System.err.println("Dropped " + group.size() + " race statistics rows for " + path);
+                    return false;
+                }
+                try {
+                    TimeUnit.MILLISECONDS.sleep(RETRY_MILLIS * attempt);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    private void open() throws IOException {
+        if (writer != null) {
+            return;
+        }
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+        if (cleanLength >= 0 && channel.size() > cleanLength) {
+            // Rows of a group that failed part way through; it is written again in full
+            channel.truncate(cleanLength);
+        }
+        if (channel.size() == 0) {
+            writer.write(HEADER);
+            writer.newLine();
+        }
+    }
+
+    private void countThroughput(int rows) {
+        long now = System.nanoTime();
+        long elapsed = now - secondStart;
+        if (elapsed >= TimeUnit.SECONDS.toNanos(1)) {
+            // Averaged over the whole window, which is longer than a second after an idle spell
+            rowsLastSecond = rowsThisSecond * TimeUnit.SECONDS.toNanos(1) / elapsed;
+            if (reportThroughput && rowsThisSecond > 0) {
+                System.out.printf("%s: %,d rows/s%n", path.getFileName(), rowsLastSecond);
+            }
+            rowsThisSecond = 0;
+            secondStart = now;
+        }
+        rowsThisSecond += rows;
+    }
+
+    private void closeQuietly() {
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+        } catch (IOException e) {
+            // Already failing, or closing at exit; a write error has been reported
+        }
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            // As above
+        }
+        writer = null;
+        channel = null;
+    }
+}
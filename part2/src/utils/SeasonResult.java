@@ -0,0 +1,115 @@
+package utils;
+
+import models.Horse;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * End-of-season standings and confidence trajectories for a roster.
+ * Horses are indexed in roster order.
+ */
+public class SeasonResult {
+    // Points for finishing 1st, 2nd and 3rd
+    static final int[] POINTS = {3, 2, 1};
+
+    private final Horse[] roster;
+    private final int[] races;
+    private final int[] wins;
+    private final int[] places;
+    private final int[] shows;
+    private final int[] falls;
+    private final int[] points;
+    private final List<List<Double>> trajectories;
+    private int racesRun;
+
+    SeasonResult(Horse[] roster) {
+        this.roster = roster;
+        this.races = new int[roster.length];
+        this.wins = new int[roster.length];
+        this.places = new int[roster.length];
+        this.shows = new int[roster.length];
+        this.falls = new int[roster.length];
+        this.points = new int[roster.length];
+        this.trajectories = new ArrayList<>();
+        for (Horse horse : roster) {
+            List<Double> trajectory = new ArrayList<>();
+            trajectory.add(horse.getConfidence());
+            trajectories.add(trajectory);
+        }
+    }
+
+    /**
+     * Records one race for a horse. Races involving the same horse must be recorded in
+     * calendar order; races with disjoint fields may be recorded concurrently.
+     */
+    void record(int horse, int position, boolean finished, boolean fallen, double newConfidence) {
+        races[horse]++;
+        if (finished) {
+            if (position == 1) wins[horse]++;
+            if (position <= 2) places[horse]++;
+            if (position <= 3) shows[horse]++;
+            if (position <= POINTS.length) points[horse] += POINTS[position - 1];
+        }
+        if (fallen) falls[horse]++;
+        trajectories.get(horse).add(newConfidence);
+    }
+
+    void setRacesRun(int racesRun) {
+        this.racesRun = racesRun;
+    }
+
+    public int getRacesRun() { return racesRun; }
+
+    public Horse getHorse(int horse) { return roster[horse]; }
+
+    public int getRaces(int horse) { return races[horse]; }
+
+    public int getWins(int horse) { return wins[horse]; }
+
+    public int getPlaces(int horse) { return places[horse]; }
+
+    public int getShows(int horse) { return shows[horse]; }
+
+    public int getFalls(int horse) { return falls[horse]; }
+
+    public int getPoints(int horse) { return points[horse]; }
+
+    /** @return confidence before the season, then after each of the horse's races */
+    public List<Double> getConfidenceTrajectory(int horse) { return trajectories.get(horse); }
+
+    public double getFinalConfidence(int horse) {
+        List<Double> trajectory = trajectories.get(horse);
+        return trajectory.get(trajectory.size() - 1);
+    }
+
+    /** @return roster indices ordered by points, then wins, then fewest falls */
+    public List<Integer> getStandings() {
+        List<Integer> standings = new ArrayList<>();
+        for (int horse = 0; horse < roster.length; horse++) {
+            standings.add(horse);
+        }
+        standings.sort(Comparator.comparingInt((Integer horse) -> -points[horse])
+                .thenComparingInt(horse -> -wins[horse])
+                .thenComparingInt(horse -> falls[horse]));
+        return standings;
+    }
+
+    public String formatStandings() {
+        StringBuilder s = new StringBuilder();
+        s.append("=== Season Standings (").append(racesRun).append(" races) ===\n");
+        s.append(String.format("%-4s %-16s %6s %5s %5s %5s %5s %6s %11s%n",
+                "Pos", "Horse", "Races", "Wins", "Place", "Show", "Falls", "Points", "Confidence"));
+
+        int position = 1;
+        for (int horse : getStandings()) {
+            s.append(String.format("%-4d %-16s %6d %5d %5d %5d %5d %6d %5.2f->%4.2f%n",
+                    position++,
+                    roster[horse].getName(),
+                    races[horse], wins[horse], places[horse], shows[horse], falls[horse], points[horse],
+                    trajectories.get(horse).get(0), getFinalConfidence(horse)));
+        }
+        return s.toString();
+    }
+}
@@ -0,0 +1,162 @@
+package utils;
+
+import models.EventRaceKernel;
+import models.Horse;
+import models.Race;
+import models.RaceEngine;
+import models.Track;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs a whole season of headless races over a roster, carrying each horse's confidence
+ * from race to race with the same rule Race.storeRaceResults applies.
+ * <p>
+ * Each fixture waits only for the previous fixture of each of its horses, so races with
+ * disjoint fields run in parallel while every horse still sees its races in calendar
+ * order. Nothing is written to disk; horses' own confidence is left untouched.
+ */
+public class SeasonScheduler {
+
+    /**
+     * One race in the calendar: a track (with its condition) and a field given as
+     * roster indices in lane order.
+     */
+    public static class Fixture {
+        private final int round;
+        private final Track track;
+        private final int[] field;
+        private final long seed;
+
+        public Fixture(int round, Track track, int[] field, long seed) {
+            this.round = round;
+            this.track = track;
+            this.field = field;
+            this.seed = seed;
+        }
+
+        public int getRound() { return round; }
+        public Track getTrack() { return track; }
+        public int[] getField() { return field; }
+        public long getSeed() { return seed; }
+    }
+
+    /**
+     * Builds a calendar from the tracks in tracks.csv.
+     */
+    public static List<Fixture> generateCalendar(Horse[] roster, int rounds, int fieldSize, long seed) {
+        return generateCalendar(roster, FileIO.loadTracks(), rounds, fieldSize, seed);
+    }
+
+    /**
+     * Builds a calendar of rounds. In each round the roster is shuffled and dealt into
+     * fields of fieldSize, one per track in turn, with a random condition per fixture;
+     * a horse races at most once per round. Horses left over after the last full field
+     * sit the round out.
+     */
+    public static List<Fixture> generateCalendar(Horse[] roster, List<Track> tracks, int rounds,
+                                                 int fieldSize, long seed) {
+        if (tracks.isEmpty() || fieldSize < 1 || roster.length < fieldSize) {
+            throw new IllegalArgumentException("Need at least one track and a roster of at least " + fieldSize);
+        }
+
+        Random random = new Random(seed);
+        Track.TrackCondition[] conditions = Track.TrackCondition.values();
+        List<Integer> order = new ArrayList<>();
+        for (int horse = 0; horse < roster.length; horse++) {
+            order.add(horse);
+        }
+
+        List<Fixture> calendar = new ArrayList<>();
+        int trackIndex = 0;
+        for (int round = 1; round <= rounds; round++) {
+            Collections.shuffle(order, random);
+            for (int start = 0; start + fieldSize <= order.size(); start += fieldSize) {
+                Track venue = tracks.get(trackIndex++ % tracks.size());
+                Track track = new Track(venue.getName(), fieldSize, venue.getLength(), venue.getShape(),
+                        conditions[random.nextInt(conditions.length)]);
+
+                int[] field = new int[fieldSize];
+                for (int lane = 0; lane < fieldSize; lane++) {
+                    field[lane] = order.get(start + lane);
+                }
+                calendar.add(new Fixture(round, track, field, random.nextLong()));
+            }
+        }
+        return calendar;
+    }
+
+    public static SeasonResult runSeason(Horse[] roster, List<Fixture> calendar) {
+        return runSeason(roster, calendar, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Runs every fixture in the calendar. The result only depends on the roster and the
+     * calendar (fixture seeds included), not on how the executor schedules the races.
+     */
+    public static SeasonResult runSeason(Horse[] roster, List<Fixture> calendar, Executor executor) {
+        SeasonResult result = new SeasonResult(roster);
+        double[] confidence = new double[roster.length];
+        for (int horse = 0; horse < roster.length; horse++) {
+            confidence[horse] = roster[horse].getConfidence();
+        }
+
+        // The last scheduled race of each horse; a fixture starts once all of its horses' are done
+        List<CompletableFuture<Void>> lastRace = new ArrayList<>();
+        for (int horse = 0; horse < roster.length; horse++) {
+            lastRace.add(CompletableFuture.completedFuture(null));
+        }
+
+        List<CompletableFuture<Void>> all = new ArrayList<>();
+        for (Fixture fixture : calendar) {
+            int[] field = fixture.getField();
+            CompletableFuture<?>[] previous = new CompletableFuture<?>[field.length];
+            for (int lane = 0; lane < field.length; lane++) {
+                previous[lane] = lastRace.get(field[lane]);
+            }
+
+            CompletableFuture<Void> race = CompletableFuture.allOf(previous)
+                    .thenRunAsync(() -> runFixture(fixture, roster, confidence, result), executor);
+            for (int horse : field) {
+                lastRace.set(horse, race);
+            }
+            all.add(race);
+        }
+
+        CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).join();
+        result.setRacesRun(calendar.size());
+        return result;
+    }
+
+    private static void runFixture(Fixture fixture, Horse[] roster, double[] confidence, SeasonResult result) {
+        int[] field = fixture.getField();
+        Horse[] lineup = new Horse[field.length];
+        double[] laneConfidence = new double[field.length];
+        for (int lane = 0; lane < field.length; lane++) {
+            lineup[lane] = roster[field[lane]];
+            laneConfidence[lane] = confidence[field[lane]];
+        }
+
+        // Event-driven, so a horse whose confidence has sunk to zero costs nothing to run
+        RaceEngine kernel = EventRaceKernel.compile(fixture.getTrack(), lineup, laneConfidence);
+        kernel.run(new SplittableRandom(fixture.getSeed()), Race.MAX_SIMULATED_TICKS);
+
+        int[] order = new int[field.length];
+        kernel.fillResultOrder(order);
+        int finishers = kernel.getFinishedCount();
+        for (int i = 0; i < order.length; i++) {
+            int lane = order[i];
+            int horse = field[lane];
+            boolean fallen = kernel.hasFallen(lane);
+            confidence[horse] = Race.adjustedConfidence(confidence[horse], i + 1, fallen);
+            result.record(horse, i + 1, i < finishers, fallen, confidence[horse]);
+        }
+    }
+}
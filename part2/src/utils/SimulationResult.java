@@ -0,0 +1,89 @@
+package utils;
+
+/**
+ * Per-lane outcome frequencies from a batch of simulated races.
+ * Lanes are 0-based and follow the order of the lineup that was simulated.
+ */
+public class SimulationResult {
+    private final int runs;
+    private final long[] wins;
+    private final long[] places;
+    private final long[] shows;
+    private final long[] falls;
+    private final long[] positionTotals;
+
+    SimulationResult(int laneCount) {
+        this.runs = 0;
+        this.wins = new long[laneCount];
+        this.places = new long[laneCount];
+        this.shows = new long[laneCount];
+        this.falls = new long[laneCount];
+        this.positionTotals = new long[laneCount];
+    }
+
+    private SimulationResult(int runs, long[] wins, long[] places, long[] shows,
+                             long[] falls, long[] positionTotals) {
+        this.runs = runs;
+        this.wins = wins;
+        this.places = places;
+        this.shows = shows;
+        this.falls = falls;
+        this.positionTotals = positionTotals;
+    }
+
+    /**
+     * Records one race for a lane. Only horses that crossed the line count towards
+     * win, place and show.
+     *
+     * @param position 1-based placing in the race result order
+     */
+    void record(int lane, int position, boolean finished, boolean fallen) {
+        if (finished) {
+            if (position == 1) wins[lane]++;
+            if (position <= 2) places[lane]++;
+            if (position <= 3) shows[lane]++;
+        }
+        if (fallen) falls[lane]++;
+        positionTotals[lane] += position;
+    }
+
+    SimulationResult withRuns(int runs) {
+        return new SimulationResult(runs, wins, places, shows, falls, positionTotals);
+    }
+
+    SimulationResult merge(SimulationResult other) {
+        int laneCount = getLaneCount();
+        long[] mergedWins = new long[laneCount];
+        long[] mergedPlaces = new long[laneCount];
+        long[] mergedShows = new long[laneCount];
+        long[] mergedFalls = new long[laneCount];
+        long[] mergedPositions = new long[laneCount];
+        for (int lane = 0; lane < laneCount; lane++) {
+            mergedWins[lane] = wins[lane] + other.wins[lane];
+            mergedPlaces[lane] = places[lane] + other.places[lane];
+            mergedShows[lane] = shows[lane] + other.shows[lane];
+            mergedFalls[lane] = falls[lane] + other.falls[lane];
+            mergedPositions[lane] = positionTotals[lane] + other.positionTotals[lane];
+        }
+        return new SimulationResult(runs + other.runs, mergedWins, mergedPlaces, mergedShows,
+                mergedFalls, mergedPositions);
+    }
+
+    public int getRuns() { return runs; }
+
+    public int getLaneCount() { return wins.length; }
+
+    public double getWinProbability(int lane) { return ratio(wins[lane]); }
+
+    public double getPlaceProbability(int lane) { return ratio(places[lane]); }
+
+    public double getShowProbability(int lane) { return ratio(shows[lane]); }
+
+    public double getFallRate(int lane) { return ratio(falls[lane]); }
+
+    public double getExpectedPosition(int lane) { return ratio(positionTotals[lane]); }
+
+    private double ratio(long count) {
+        return runs == 0 ? 0.0 : (double) count / runs;
+    }
+}
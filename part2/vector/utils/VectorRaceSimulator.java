@@ -0,0 +1,96 @@
+package utils;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import models.RaceKernel;
+
+/**
+ * BatchRaceSimulator with its two per-tick loops written against jdk.incubator.vector:
+ * draws are mixed one long vector at a time, and each lane's races are stepped one int
+ * vector at a time, with the move limits gathered by distance and the compares turned
+ * into masks. Results are exactly those of the scalar loops, which also step any races
+ * left over after the last whole vector.
+ * <p>
+ * Kept out of src so the app builds without the incubator module. To use it:
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -d out src/&#42;&#42;/&#42;.java vector/&#42;&#42;/&#42;.java
+ * java --add-modules jdk.incubator.vector -cp out utils.BatchRaceBenchmark
+ * </pre>
+ */
+class VectorRaceSimulator extends BatchRaceSimulator {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    // As many int lanes as LONGS has, for narrowing draws
+    private static final VectorSpecies<Integer> DRAW_INTS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(LONGS.vectorBitSize() / 2));
+
+    private final int[] index = new int[INTS.length()];
+    private final LongVector counterOffsets;
+
+    VectorRaceSimulator(RaceKernel tables, int batch, long seed) {
+        super(tables, batch, seed);
+        // Lane k draws from counter k + 1
+        counterOffsets = LongVector.zero(LONGS).addIndex(1).add(1L).mul(GAMMA);
+    }
+
+    @Override
+    void fillDraws() {
+        long state = drawState;
+        int slots = moveDraws.length;
+        int bound = LONGS.loopBound(slots);
+        int i = 0;
+        for (; i < bound; i += LONGS.length()) {
+            LongVector z = counterOffsets.add(state + i * GAMMA);
+            z = z.lanewise(VectorOperators.XOR, z.lanewise(VectorOperators.LSHR, 30)).mul(MIX1);
+            z = z.lanewise(VectorOperators.XOR, z.lanewise(VectorOperators.LSHR, 27)).mul(MIX2);
+            z = z.lanewise(VectorOperators.XOR, z.lanewise(VectorOperators.LSHR, 31));
+            ((IntVector) z.lanewise(VectorOperators.LSHR, 33).castShape(DRAW_INTS, 0)).intoArray(moveDraws, i);
+            ((IntVector) z.castShape(DRAW_INTS, 0)).lanewise(VectorOperators.LSHR, 1).intoArray(fallDraws, i);
+        }
+        for (; i < slots; i++) {
+            long bits = mix64(state + (i + 1) * GAMMA);
+            moveDraws[i] = (int) (bits >>> 33);
+            fallDraws[i] = (int) bits >>> 1;
+        }
+        drawState = state + slots * GAMMA;
+    }
+
+    @Override
+    void advance(int tick) {
+        IntVector zero = IntVector.zero(INTS);
+        int bound = INTS.loopBound(batch);
+        for (int lane = 0; lane < laneCount; lane++) {
+            int base = lane * batch;
+            int table = lane * stride;
+            int fall = fallLimit[lane];
+            for (int race = 0; race < bound; race += INTS.length()) {
+                int i = base + race;
+                IntVector live = IntVector.fromArray(INTS, alive, i);
+                IntVector dist = IntVector.fromArray(INTS, distance, i);
+                dist.add(table).intoArray(index, 0);
+                IntVector limit = IntVector.fromArray(INTS, moveLimit, 0, index, 0);
+
+                IntVector moved = zero.blend(live,
+                        IntVector.fromArray(INTS, moveDraws, i).compare(VectorOperators.LE, limit));
+                IntVector d = dist.add(moved);
+                IntVector crossed = zero.blend(moved, d.compare(VectorOperators.GE, length));
+                // A horse that has just crossed the line is safe
+                IntVector fell = zero.blend(live.and(crossed.lanewise(VectorOperators.XOR, 1)),
+                        IntVector.fromArray(INTS, fallDraws, i).compare(VectorOperators.LE, fall));
+                IntVector done = crossed.or(fell);
+
+                d.intoArray(distance, i);
+                IntVector.fromArray(INTS, finishTick, i)
+                        .blend(tick, crossed.compare(VectorOperators.NE, 0)).intoArray(finishTick, i);
+                IntVector.fromArray(INTS, fallen, i).or(fell).intoArray(fallen, i);
+                live.and(done.lanewise(VectorOperators.XOR, 1)).intoArray(alive, i);
+                IntVector.fromArray(INTS, running, race).sub(done).intoArray(running, race);
+            }
+            advanceRaces(lane, bound, batch, tick);
+        }
+    }
+}